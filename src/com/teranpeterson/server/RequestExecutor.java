@@ -0,0 +1,269 @@
+package com.teranpeterson.server;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs requests for the http server on worker threads so a slow request doesn't hold up every other request. The
+ * thread model is chosen when the server starts. Keeps gauges of how many requests are waiting for a thread and how many
+ * are running, both overall and for each endpoint.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class RequestExecutor implements Executor {
+    /**
+     * Milliseconds between checks for in-flight requests while draining
+     */
+    private static final long DRAIN_POLL = 50;
+
+    /**
+     * Ways of assigning threads to requests
+     */
+    public enum ThreadModel {
+        /**
+         * Fixed number of worker threads sharing one queue
+         */
+        FIXED,
+        /**
+         * Fork/join pool where idle workers steal queued requests from busy ones
+         */
+        STEALING,
+        /**
+         * New thread for every request. Uses virtual threads when the JVM supports them.
+         */
+        VIRTUAL;
+
+        /**
+         * Gets the thread model with the given name, ignoring case
+         *
+         * @param name fixed, stealing or virtual
+         * @return Matching thread model
+         * @throws IllegalArgumentException Unknown thread model
+         */
+        public static ThreadModel parse(String name) {
+            return valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    private final ThreadModel model;
+    private final int threads;
+    private final ExecutorService workers;
+
+    /**
+     * Requests handed to the executor that haven't started running
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * Requests currently running on a worker thread
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    /**
+     * Requests currently running, by endpoint
+     */
+    private final Map<String, AtomicInteger> endpoints = new ConcurrentHashMap<>();
+    /**
+     * Set when the server is shutting down. New requests are turned away while in-flight requests finish.
+     */
+    private volatile boolean draining;
+
+    /**
+     * Creates an executor using the given thread model
+     *
+     * @param model   Thread model to use
+     * @param threads Number of worker threads (ignored by the virtual model)
+     */
+    public RequestExecutor(ThreadModel model, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Thread count must be at least 1");
+        this.model = model;
+        this.threads = threads;
+
+        switch (model) {
+            case STEALING:
+                workers = Executors.newWorkStealingPool(threads);
+                break;
+            case VIRTUAL:
+                workers = newThreadPerRequest();
+                break;
+            default:
+                workers = Executors.newFixedThreadPool(threads, new Named());
+        }
+    }
+
+    /**
+     * Queues a request to run on a worker thread
+     *
+     * @param task Request to run
+     */
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        try {
+            workers.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps a handler so requests to its endpoint are counted while they run. Once the executor starts draining, new
+     * requests are answered with 503 Service Unavailable instead of being handled.
+     *
+     * @param path    Context path the handler is registered at
+     * @param handler Handler for the endpoint
+     * @return Handler that updates the endpoint's gauge
+     */
+    public HttpHandler track(String path, HttpHandler handler) {
+        AtomicInteger running = endpoints.computeIfAbsent(path, p -> new AtomicInteger());
+        return exchange -> {
+            if (draining) {
+                byte[] response = "{\"message\" : \"ERROR: Server is shutting down\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+                return;
+            }
+            running.incrementAndGet();
+            try {
+                handler.handle(exchange);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Turns away new requests and waits for the ones already running to finish
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return True if every request finished, false if the timeout ran out first
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        draining = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (queued.get() > 0 || active.get() > 0) {
+            if (System.nanoTime() >= deadline) return false;
+            Thread.sleep(DRAIN_POLL);
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting new requests. Requests already queued still run.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Waits for queued and running requests to finish after a shutdown
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return True if every request finished, false if the timeout ran out first
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Gets the thread model in use
+     *
+     * @return Thread model
+     */
+    public ThreadModel getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the number of worker threads the executor was created with
+     *
+     * @return Worker thread count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of requests waiting for a worker thread
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Gets the number of worker threads currently running a request
+     *
+     * @return Active thread count
+     */
+    public int getActiveThreads() {
+        return active.get();
+    }
+
+    /**
+     * Gets the number of worker threads currently running a request for each endpoint
+     *
+     * @return Active thread count by context path
+     */
+    public Map<String, Integer> getActiveThreadsByEndpoint() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : endpoints.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Creates an executor that starts a thread for every request. Virtual threads are only available on Java 21 and up,
+     * so they are looked up reflectively and plain threads are used on older JVMs.
+     *
+     * @return Thread per request executor
+     */
+    private static ExecutorService newThreadPerRequest() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(new Named());
+        }
+    }
+
+    /**
+     * Names worker threads so they are easy to find in thread dumps
+     */
+    private static class Named implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "request-" + count.incrementAndGet());
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package com.teranpeterson.server;
 
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.teranpeterson.server.cache.AssetCache;
+import com.teranpeterson.server.cache.ResponseCache;
+import com.teranpeterson.server.cache.TokenCache;
+import com.teranpeterson.server.dao.AuthTokenDAO;
+import com.teranpeterson.server.dao.ConnectionPool;
+import com.teranpeterson.server.dao.DAOException;
+import com.teranpeterson.server.dao.Database;
 import com.teranpeterson.server.handler.*;
+import com.teranpeterson.server.helpers.Corpus;
+import com.teranpeterson.server.metrics.HttpMetrics;
+import com.teranpeterson.server.metrics.Metrics;
+import com.teranpeterson.server.metrics.Timing;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Family Map Server. Used as the backend for the Family Map application. Accepts certain url requests and manages
@@ -20,26 +34,42 @@ import java.net.InetSocketAddress;
  * /person
  * /event/{eventID}
  * /event
+ * /sync?since={version}
+ * /metrics
+ * /timing?enabled={true or false}
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.14
  */
 public class Server {
+    /**
+     * Directory holding the files of the web interface
+     */
+    private static final String WEB_ROOT = "resources/web";
+
+    private final ServerConfig config;
+    private final HttpServer server;
+    private final RequestExecutor executor;
+    private final Compression compression;
+    private final HttpMetrics httpMetrics = new HttpMetrics(Metrics.getInstance());
+    private final ServerTiming timing = new ServerTiming(Metrics.getInstance());
+    private final TokenSweeper sweeper = new TokenSweeper();
+
     /**
      * Creates a server instance that runs in the background and handles requests from the client
      *
-     * @param args Port number
+     * @param args Port number followed by any --name=value options accepted by {@link ServerConfig}
      */
     public static void main(String[] args) {
-        try {
-            int port = Integer.parseInt(args[0]);
-            if (port < 0 || port > 65535) System.out.println("ERROR: Invalid port number");
-            run(port);
-        } catch (NumberFormatException e) {
-            System.out.println("ERROR: Invalid port number");
+        if (args.length == 0) {
+            System.out.println("USAGE: java Server [port number] [--name=value ...]");
             System.exit(1);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.out.println("USAGE: java Server [port number]");
+        }
+        try {
+            Server server = run(ServerConfig.parse(args));
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "shutdown"));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
             System.exit(1);
         } catch (IOException e) {
             e.printStackTrace();
@@ -47,18 +77,212 @@ public class Server {
         }
     }
 
-    public static void run(int port) throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(port), 10);
-        server.createContext("/", new WebUIHandler());
-        server.createContext("/user/register", new RegisterHandler());
-        server.createContext("/user/login", new LoginHandler());
-        server.createContext("/clear", new ClearHandler());
-        server.createContext("/fill", new FillHandler());
-        server.createContext("/load", new LoadHandler());
-        server.createContext("/person", new PersonHandler());
-        server.createContext("/event", new EventHandler());
-        server.setExecutor(null);
-        System.out.println("Starting server on port " + port);
-        server.start();
+    /**
+     * Starts the server on the given port with the default settings
+     *
+     * @param port Port number
+     * @return Running server
+     * @throws IOException Unable to migrate the database or bind the port
+     */
+    public static Server run(int port) throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.set("port", String.valueOf(port));
+        return run(config);
+    }
+
+    /**
+     * Migrates the database schema, loads the generator corpus and starts listening for requests
+     *
+     * @param config Server settings
+     * @return Running server
+     * @throws IOException Unable to migrate the database, read the corpus or bind the port
+     */
+    public static Server run(ServerConfig config) throws IOException {
+        ConnectionPool.configure(config.getPoolSize());
+        // A cached token is never trusted for longer than a session lasts
+        AuthTokenDAO.configure(TimeUnit.SECONDS.toMillis(config.getSessionTimeout()));
+        TokenCache.configure(config.getTokenCacheSize(),
+                TimeUnit.SECONDS.toMillis(Math.min(config.getTokenCacheTtl(), config.getSessionTimeout())));
+        ResponseCache.configure(config.getResponseCacheSize() * 1024L * 1024L);
+        Timing.setEnabled(config.isTiming());
+        try {
+            new Database().createTables();
+        } catch (DAOException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        try {
+            Corpus.get(); // Load the generator's names and locations before the first request needs them
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        // Read by the JDK http server when the first server is created
+        System.setProperty("sun.net.httpserver.maxReqTime", String.valueOf(config.getRequestTimeout()));
+        System.setProperty("sun.net.httpserver.maxRspTime", String.valueOf(config.getResponseTimeout()));
+        // Headers and body are written separately, so with Nagle on a kept alive connection waits for a delayed ack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        Server server = new Server(config);
+        System.out.println("Starting server on " + config.getBind() + ":" + config.getPort() + " with "
+                + config.getExecutor().name().toLowerCase() + " executor (" + config.getThreads() + " threads)");
+        server.server.start();
+        server.sweeper.start(config.getSweepInterval(), TimeUnit.SECONDS);
+        return server;
+    }
+
+    private Server(ServerConfig config) throws IOException {
+        this.config = config;
+        executor = new RequestExecutor(config.getExecutor(), config.getThreads());
+        server = HttpServer.create(new InetSocketAddress(config.getBind(), config.getPort()), config.getBacklog());
+        compression = new Compression(config.getCompressionLevel(), config.getCompressionThreshold());
+        AssetCache assets = AssetCache.load(Paths.get(WEB_ROOT));
+        context("/", new WebUIHandler(assets));
+        context("/user/register", new RegisterHandler());
+        context("/user/login", new LoginHandler());
+        context("/clear", new ClearHandler());
+        context("/fill", new FillHandler());
+        context("/load", new LoadHandler());
+        context("/person", new PersonHandler());
+        context("/event", new EventHandler());
+        context("/sync", new SyncHandler());
+        context("/metrics", new MetricsHandler(Metrics.getInstance()));
+        context("/timing", new TimingHandler(config.isTimingToggle()));
+        register(Metrics.getInstance(), assets);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Registers a handler with request metrics, request tracking, stage timing and response compression
+     *
+     * @param path    Context path
+     * @param handler Handler for the path
+     */
+    private void context(String path, HttpHandler handler) {
+        server.createContext(path, httpMetrics.wrap(path, executor.track(path,
+                timing.wrap(path, compression.wrap(handler)))));
+    }
+
+    /**
+     * Adds the statistics the executor, connection pool, caches, compression layer and token sweeper already keep to
+     * the metrics. They are read when the metrics are scraped, so recording them costs nothing extra.
+     *
+     * @param metrics Registry to add them to
+     * @param assets  Files of the web interface
+     */
+    private void register(Metrics metrics, AssetCache assets) {
+        metrics.gauge("familymap_executor_queued_requests", "Requests waiting for a worker thread",
+                executor::getQueueDepth);
+        metrics.gauge("familymap_executor_active_threads", "Worker threads running a request",
+                executor::getActiveThreads);
+        metrics.gauge("familymap_executor_threads", "Worker threads the executor was created with",
+                executor::getThreads);
+        for (String path : executor.getActiveThreadsByEndpoint().keySet()) {
+            metrics.gauge("familymap_executor_endpoint_active_threads",
+                    "Worker threads running a request for an endpoint",
+                    () -> executor.getActiveThreadsByEndpoint().get(path), "path", path);
+        }
+
+        metrics.gauge("familymap_db_pool_connections", "Open pooled connections",
+                () -> ConnectionPool.getInstance().getSize());
+        metrics.gauge("familymap_db_pool_idle_connections", "Pooled connections waiting to be borrowed",
+                () -> ConnectionPool.getInstance().getIdleCount());
+        metrics.gauge("familymap_db_pool_active_connections", "Pooled connections borrowed",
+                () -> ConnectionPool.getInstance().getActiveCount());
+        metrics.gauge("familymap_db_pool_max_connections", "Most connections the pool opens",
+                () -> ConnectionPool.getInstance().getMaxSize());
+        metrics.counter("familymap_db_pool_borrows_total", "Connections borrowed from the pool",
+                () -> ConnectionPool.getInstance().getBorrowCount());
+        metrics.counter("familymap_db_pool_created_total", "Connections opened by the pool",
+                () -> ConnectionPool.getInstance().getCreatedCount());
+        metrics.counter("familymap_db_pool_evicted_total", "Idle connections closed by the pool",
+                () -> ConnectionPool.getInstance().getEvictedCount());
+        metrics.counter("familymap_db_pool_invalid_total", "Broken connections dropped by the pool",
+                () -> ConnectionPool.getInstance().getInvalidCount());
+        metrics.counter("familymap_db_pool_timeouts_total", "Borrows that gave up waiting for a connection",
+                () -> ConnectionPool.getInstance().getTimeoutCount());
+        metrics.counter("familymap_db_pool_wait_seconds_total", "Time spent waiting to borrow a connection",
+                () -> ConnectionPool.getInstance().getTotalWaitNanos() / 1e9);
+        metrics.gauge("familymap_db_pool_max_wait_seconds", "Longest wait to borrow a connection",
+                () -> ConnectionPool.getInstance().getMaxWaitNanos() / 1e9);
+        metrics.counter("familymap_db_statement_cache_hits_total", "Prepared statements reused from the cache",
+                () -> ConnectionPool.getInstance().getStatementHits());
+        metrics.counter("familymap_db_statement_cache_misses_total", "Prepared statements that had to be prepared",
+                () -> ConnectionPool.getInstance().getStatementMisses());
+
+        metrics.counter("familymap_cache_hits_total", "Cache lookups that found an entry",
+                () -> TokenCache.getInstance().getHits(), "cache", "token");
+        metrics.counter("familymap_cache_misses_total", "Cache lookups that found nothing",
+                () -> TokenCache.getInstance().getMisses(), "cache", "token");
+        metrics.counter("familymap_cache_evictions_total", "Entries dropped to make room",
+                () -> TokenCache.getInstance().getEvictions(), "cache", "token");
+        metrics.gauge("familymap_cache_entries", "Entries in the cache",
+                () -> TokenCache.getInstance().getSize(), "cache", "token");
+        metrics.counter("familymap_cache_hits_total", "Cache lookups that found an entry",
+                () -> ResponseCache.getInstance().getHits(), "cache", "response");
+        metrics.counter("familymap_cache_misses_total", "Cache lookups that found nothing",
+                () -> ResponseCache.getInstance().getMisses(), "cache", "response");
+        metrics.counter("familymap_cache_evictions_total", "Entries dropped to make room",
+                () -> ResponseCache.getInstance().getEvictions(), "cache", "response");
+        metrics.gauge("familymap_cache_entries", "Entries in the cache",
+                () -> ResponseCache.getInstance().getSize(), "cache", "response");
+        metrics.gauge("familymap_cache_bytes", "Bytes held by the cache",
+                () -> ResponseCache.getInstance().getBytes(), "cache", "response");
+        metrics.gauge("familymap_cache_entries", "Entries in the cache", assets::getSize, "cache", "asset");
+
+        metrics.counter("familymap_compression_responses_total", "Responses sent compressed",
+                compression::getCompressed);
+        metrics.counter("familymap_compression_bytes_in_total", "Bytes of responses before compression",
+                compression::getBytesIn);
+        metrics.counter("familymap_compression_bytes_out_total", "Bytes of responses after compression",
+                compression::getBytesOut);
+
+        metrics.counter("familymap_tokens_purged_total", "Expired auth tokens deleted by the sweeper",
+                sweeper::getPurged);
+    }
+
+    /**
+     * Shuts the server down gracefully. New requests are turned away, in-flight requests are given until the drain
+     * timeout to finish, then the listener, the token sweeper and the pooled database connections are closed.
+     */
+    public void stop() {
+        System.out.println("Stopping server, waiting up to " + config.getDrainTimeout() + "s for requests to finish");
+        try {
+            if (!executor.drain(config.getDrainTimeout(), TimeUnit.SECONDS)) {
+                System.out.println("WARNING: " + executor.getActiveThreads() + " requests still running after drain timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+        executor.shutdown();
+        sweeper.stop();
+        ConnectionPool.getInstance().close();
+    }
+
+    /**
+     * Gets the sweeper deleting expired auth tokens for this server
+     *
+     * @return Token sweeper
+     */
+    public TokenSweeper getSweeper() {
+        return sweeper;
+    }
+
+    /**
+     * Gets the compression layer for this server's responses
+     *
+     * @return Response compression
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Gets the executor running requests for this server
+     *
+     * @return Request executor
+     */
+    public RequestExecutor getExecutor() {
+        return executor;
     }
 }
@@ -0,0 +1,337 @@
+package com.teranpeterson.server;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+/**
+ * Settings used to start the server. Values come from an optional properties file and can be overridden on the command
+ * line, eg. {@code java Server 8080 --threads=16 --backlog=256 --config=server.properties}. Options on the command line
+ * use the same names as the keys in the properties file.
+ * <p>
+ * Options:
+ * port, bind, backlog, executor (fixed, stealing or virtual), threads, pool-size, request-timeout, response-timeout,
+ * drain-timeout, token-cache-size, token-cache-ttl, session-timeout, sweep-interval, response-cache-size,
+ * compression-level, compression-threshold, timing (true or false), timing-toggle (true or false)
+ *
+ * @author Teran Peterson
+ * @version v0.1.6
+ */
+public class ServerConfig {
+    private int port = 8080;
+    private String bind = "0.0.0.0";
+    private int backlog = 128;
+    private RequestExecutor.ThreadModel executor = RequestExecutor.ThreadModel.FIXED;
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+    private int poolSize = 8;
+    private int requestTimeout = 30;
+    private int responseTimeout = 120;
+    private int drainTimeout = 30;
+    private int tokenCacheSize = 10000;
+    private int tokenCacheTtl = 600;
+    private int sessionTimeout = 3600;
+    private int sweepInterval = 300;
+    private int responseCacheSize = 64;
+    private int compressionLevel = 6;
+    private int compressionThreshold = 1024;
+    private boolean timing = false;
+    private boolean timingToggle = false;
+
+    /**
+     * Creates a config with the default settings
+     */
+    public ServerConfig() {
+
+    }
+
+    /**
+     * Builds a config from command line arguments. The first argument may be the port number on its own, every other
+     * argument has the form --name=value. A --config=file argument loads a properties file first and the rest of the
+     * arguments override it.
+     *
+     * @param args Command line arguments
+     * @return Server settings
+     * @throws IllegalArgumentException Unknown option or invalid value
+     * @throws IOException              Unable to read the properties file
+     */
+    public static ServerConfig parse(String[] args) throws IOException {
+        Properties props = new Properties();
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                try (Reader reader = new FileReader(arg.substring(9))) {
+                    props.load(reader);
+                }
+            }
+        }
+
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (i == 0 && !arg.startsWith("--")) {
+                props.setProperty("port", arg);
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                props.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                throw new IllegalArgumentException("ERROR: Invalid option '" + arg + "'");
+            }
+        }
+
+        ServerConfig config = new ServerConfig();
+        for (String name : props.stringPropertyNames()) {
+            config.set(name, props.getProperty(name).trim());
+        }
+        return config;
+    }
+
+    /**
+     * Sets a single option by name
+     *
+     * @param name  Option name
+     * @param value Option value
+     * @throws IllegalArgumentException Unknown option or invalid value
+     */
+    public void set(String name, String value) {
+        switch (name) {
+            case "port":
+                port = range(name, value, 0, 65535);
+                break;
+            case "bind":
+                bind = value;
+                break;
+            case "backlog":
+                backlog = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "executor":
+                executor = RequestExecutor.ThreadModel.parse(value);
+                break;
+            case "threads":
+                threads = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "pool-size":
+                poolSize = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "request-timeout":
+                requestTimeout = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "response-timeout":
+                responseTimeout = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "drain-timeout":
+                drainTimeout = range(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "token-cache-size":
+                tokenCacheSize = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "token-cache-ttl":
+                tokenCacheTtl = range(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "session-timeout":
+                sessionTimeout = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "sweep-interval":
+                sweepInterval = range(name, value, 1, Integer.MAX_VALUE);
+                break;
+            case "response-cache-size":
+                responseCacheSize = range(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "compression-level":
+                compressionLevel = range(name, value, 0, 9);
+                break;
+            case "compression-threshold":
+                compressionThreshold = range(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "timing":
+                timing = bool(name, value);
+                break;
+            case "timing-toggle":
+                timingToggle = bool(name, value);
+                break;
+            case "config":
+                break; // Already loaded
+            default:
+                throw new IllegalArgumentException("ERROR: Unknown option '" + name + "'");
+        }
+    }
+
+    private static boolean bool(String name, String value) {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("ERROR: Invalid " + name + " '" + value + "'");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private static int range(String name, String value, int min, int max) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max) return n;
+        } catch (NumberFormatException e) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("ERROR: Invalid " + name + " '" + value + "'");
+    }
+
+    /**
+     * Gets the port to listen on
+     *
+     * @return Port number
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the address to listen on
+     *
+     * @return Host name or ip address, 0.0.0.0 for every interface
+     */
+    public String getBind() {
+        return bind;
+    }
+
+    /**
+     * Gets the number of pending connections the operating system will queue before refusing new ones
+     *
+     * @return Accept backlog
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Gets the thread model used to run requests
+     *
+     * @return Thread model
+     */
+    public RequestExecutor.ThreadModel getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the number of worker threads
+     *
+     * @return Worker thread count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the maximum number of pooled database connections
+     *
+     * @return Connection pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Gets the time a client has to send a complete request
+     *
+     * @return Timeout in seconds
+     */
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Gets the time the server has to send a complete response
+     *
+     * @return Timeout in seconds
+     */
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    /**
+     * Gets the time in-flight requests are given to finish when the server shuts down
+     *
+     * @return Timeout in seconds
+     */
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Gets the maximum number of auth tokens kept in memory
+     *
+     * @return Token cache size
+     */
+    public int getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    /**
+     * Gets the time an auth token stays in memory before it is checked against the database again
+     *
+     * @return Time to live in seconds
+     */
+    public int getTokenCacheTtl() {
+        return tokenCacheTtl;
+    }
+
+    /**
+     * Gets the time an auth token stays valid without being used
+     *
+     * @return Session timeout in seconds
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Gets the time between sweeps for expired auth tokens
+     *
+     * @return Sweep interval in seconds
+     */
+    public int getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * Gets the maximum size of the cached /person and /event lists. 0 turns the cache off.
+     *
+     * @return Response cache size in megabytes
+     */
+    public int getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    /**
+     * Gets the deflater level used for gzip and deflate responses. 0 turns compression off.
+     *
+     * @return Compression level from 0 to 9
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Gets the smallest response body that is compressed
+     *
+     * @return Compression threshold in bytes
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Checks whether request stages are timed when the server starts. Can be changed at runtime through /timing if
+     * {@link #isTimingToggle()} allows it.
+     *
+     * @return True if timing starts on
+     */
+    public boolean isTiming() {
+        return timing;
+    }
+
+    /**
+     * Checks whether clients may switch timing on and off with a POST to /timing. Off by default, since timing sends
+     * the server's internal stages and their latencies to every client.
+     *
+     * @return True if timing can be changed at runtime
+     */
+    public boolean isTimingToggle() {
+        return timingToggle;
+    }
+}
@@ -0,0 +1,100 @@
+package com.teranpeterson.server;
+
+import com.teranpeterson.server.dao.AuthTokenDAO;
+import com.teranpeterson.server.dao.DAOException;
+import com.teranpeterson.server.dao.Database;
+
+import java.sql.Connection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired auth tokens in the background so the AuthTokens table doesn't grow with every login. Sweeps run on
+ * their own daemon thread. Each batch is committed on its own so request threads are only ever kept waiting on the
+ * database for one small delete.
+ *
+ * @author Teran Peterson
+ * @version v0.1.2
+ */
+public class TokenSweeper {
+    /**
+     * Maximum number of tokens deleted in one transaction
+     */
+    static final int BATCH_SIZE = 500;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Tokens deleted since the sweeper started
+     */
+    private volatile long purged;
+
+    /**
+     * Creates a sweeper. Nothing runs until it is started.
+     */
+    public TokenSweeper() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sweeps for expired tokens at a fixed interval, starting one interval from now
+     *
+     * @param interval Time between sweeps
+     * @param unit     Unit of the interval
+     */
+    public void start(long interval, TimeUnit unit) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (DAOException e) {
+                e.printStackTrace(); // Try again next interval
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Deletes every token that has gone unused for longer than the session timeout, one batch at a time
+     *
+     * @return Number of tokens deleted
+     * @throws DAOException Problem executing sql statements
+     */
+    public int sweep() throws DAOException {
+        long cutoff = System.currentTimeMillis() - AuthTokenDAO.getSessionTimeout();
+        int total = 0;
+        int deleted;
+        do {
+            Database db = new Database();
+            try {
+                Connection conn = db.openWriteConnection();
+                deleted = new AuthTokenDAO(conn).purgeExpired(cutoff, BATCH_SIZE);
+                db.closeConnection(true);
+            } finally {
+                db.release();
+            }
+            total += deleted;
+        } while (deleted == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+        purged += total;
+        return total;
+    }
+
+    /**
+     * Stops sweeping. A sweep that is already running finishes its current batch.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Gets the number of tokens deleted since the sweeper started
+     *
+     * @return Purged token count
+     */
+    public long getPurged() {
+        return purged;
+    }
+}
@@ -0,0 +1,235 @@
+package com.teranpeterson.server.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In memory copy of the files served by the web interface. Every file under the root directory is read once when the
+ * server starts, along with its content type, a gzipped copy if that is smaller, and the validators sent as ETag and
+ * Last-Modified. Lookups never touch the disk, and only paths of files found at startup can be served, so a request
+ * can't reach anything outside the root.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class AssetCache {
+    /**
+     * Content types by file extension. Files with other extensions are sent as application/octet-stream.
+     */
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("html", "text/html; charset=utf-8");
+        TYPES.put("htm", "text/html; charset=utf-8");
+        TYPES.put("css", "text/css; charset=utf-8");
+        TYPES.put("js", "application/javascript; charset=utf-8");
+        TYPES.put("json", "application/json; charset=utf-8");
+        TYPES.put("txt", "text/plain; charset=utf-8");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("png", "image/png");
+        TYPES.put("gif", "image/gif");
+    }
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private final Map<String, Asset> assets;
+
+    /**
+     * Creates a cache holding the given assets
+     *
+     * @param assets Assets by request path
+     */
+    AssetCache(Map<String, Asset> assets) {
+        this.assets = Collections.unmodifiableMap(assets);
+    }
+
+    /**
+     * Reads every file under a directory into memory. Editor backup files ending in ~ are skipped.
+     *
+     * @param root Directory holding the web interface
+     * @return Cache of the files found
+     * @throws IOException Problem reading a file
+     */
+    public static AssetCache load(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        Map<String, Asset> assets = new HashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith("~")) continue;
+
+            StringBuilder path = new StringBuilder();
+            for (Path part : root.relativize(file)) {
+                path.append('/').append(part);
+            }
+            byte[] content = Files.readAllBytes(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            assets.put(path.toString(), new Asset(content, type(name), modified));
+        }
+        return new AssetCache(assets);
+    }
+
+    /**
+     * Finds the asset for a request path. / and paths ending in / are served their index.html.
+     *
+     * @param path Decoded path from the request url
+     * @return Asset, or null if there is none or the path isn't a plain path below the root
+     */
+    public Asset get(String path) {
+        if (path == null || !path.startsWith("/") || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) return null;
+        for (String segment : path.split("/")) {
+            if (segment.equals(".") || segment.equals("..")) return null;
+        }
+        if (path.endsWith("/")) path += "index.html";
+        return assets.get(path);
+    }
+
+    /**
+     * Gets the number of files held
+     *
+     * @return Asset count
+     */
+    public int getSize() {
+        return assets.size();
+    }
+
+    /**
+     * Gets the content type for a file name
+     */
+    static String type(String name) {
+        int dot = name.lastIndexOf('.');
+        String type = dot < 0 ? null : TYPES.get(name.substring(dot + 1).toLowerCase());
+        return type != null ? type : "application/octet-stream";
+    }
+
+    /**
+     * A file and everything sent along with it
+     */
+    public static class Asset {
+        private final byte[] content;
+        private final byte[] gzipped;
+        private final String type;
+        private final String etag;
+        private final long lastModified;
+
+        /**
+         * Creates an asset, compressing it if that makes it smaller
+         *
+         * @param content      File contents
+         * @param type         Content type
+         * @param lastModified Time the file was last changed in milliseconds
+         */
+        Asset(byte[] content, String type, long lastModified) {
+            this.content = content;
+            this.type = type;
+            this.lastModified = lastModified / 1000 * 1000; // HTTP dates only have whole seconds
+            this.etag = etag(content);
+            byte[] gzipped = gzip(content);
+            this.gzipped = gzipped.length < content.length ? gzipped : null;
+        }
+
+        /**
+         * Makes a strong ETag from a hash of the contents, so it only changes when the file does
+         */
+        private static String etag(byte[] content) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+                StringBuilder tag = new StringBuilder("\"");
+                for (int i = 0; i < 12; ++i) {
+                    tag.append(String.format("%02x", hash[i]));
+                }
+                return tag.append('"').toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static byte[] gzip(byte[] content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(9); // Only done once, so spend the time to make it small
+                }
+            }) {
+                gzip.write(content);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Gets the file contents
+         *
+         * @return Uncompressed bytes
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Gets the gzipped contents
+         *
+         * @return Gzipped bytes, or null if compressing doesn't make the file smaller
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        /**
+         * Gets the content type
+         *
+         * @return Content-Type header value
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the ETag of the uncompressed contents. The gzipped copy is tagged with its weak form.
+         *
+         * @return Strong ETag including the quotes
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Gets the time the file was last changed
+         *
+         * @return Milliseconds, rounded down to whole seconds
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Gets the time the file was last changed as an HTTP date
+         *
+         * @return Last-Modified header value
+         */
+        public String getLastModifiedDate() {
+            return HTTP_DATE.format(Instant.ofEpochMilli(lastModified));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.teranpeterson.server.cache;
+
+import com.teranpeterson.server.helpers.IdGenerator;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of serialized list responses, by user and endpoint. A user's persons and events only change on /fill,
+ * /load and /clear, so the json sent for /person and /event can be sent again as is until then. The cache holds at most
+ * a fixed number of bytes and drops the least recently used responses to stay under it.
+ * <p>
+ * The cache also tracks a version for each user's data, used as the ETag of their lists so clients that already have
+ * the latest lists can be answered with 304 Not Modified. Versions come from a clock that ticks on every change, so a
+ * version is never reused while the server is running, and each cache has its own epoch so versions aren't reused
+ * across restarts either.
+ *
+ * @author Teran Peterson
+ * @version v0.1.2
+ */
+public class ResponseCache {
+    /**
+     * Endpoint listing every person related to a user
+     */
+    public static final String PERSONS = "/person";
+    /**
+     * Endpoint listing every event related to a user
+     */
+    public static final String EVENTS = "/event";
+
+    /**
+     * Default maximum number of bytes of cached json
+     */
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static ResponseCache instance;
+
+    private final long maxBytes;
+    private final Map<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Ticks every time responses are invalidated, so lists read before a change aren't cached after it
+     */
+    private long generation;
+    /**
+     * Generation of each user's last change. Users not listed last changed when the cache was cleared.
+     */
+    private final Map<String, Long> versions = new HashMap<>();
+    private long cleared;
+    /**
+     * Distinguishes the versions of this cache from those of earlier runs of the server
+     */
+    private final String epoch = Long.toString(IdGenerator.nextLong(), 36);
+
+    // Metrics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache
+     *
+     * @param maxBytes Maximum number of bytes of cached json, 0 disables the cache
+     */
+    ResponseCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Cache size can't be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the cache shared by the whole server, creating it on first use
+     *
+     * @return Shared response cache
+     */
+    public static synchronized ResponseCache getInstance() {
+        if (instance == null) {
+            instance = new ResponseCache(DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the shared cache with an empty one of the given size
+     *
+     * @param maxBytes Maximum number of bytes of cached json, 0 disables the cache
+     */
+    public static synchronized void configure(long maxBytes) {
+        instance = new ResponseCache(maxBytes);
+    }
+
+    /**
+     * Looks up a user's cached list
+     *
+     * @param userName User the list belongs to
+     * @param endpoint {@link #PERSONS} or {@link #EVENTS}
+     * @return Serialized response, or null if it isn't cached
+     */
+    public synchronized byte[] get(String userName, String endpoint) {
+        byte[] json = entries.get(new Key(userName, endpoint));
+        if (json != null) ++hits;
+        else ++misses;
+        return json;
+    }
+
+    /**
+     * Gets the current generation. Read it before reading a list from the database and pass it to
+     * {@link #put(String, String, byte[], long)} and {@link #etag(String, long)}.
+     *
+     * @return Current generation
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Gets the generation of a user's last change
+     */
+    private long version(String userName) {
+        Long version = versions.get(userName);
+        return version == null ? cleared : version;
+    }
+
+    /**
+     * Gets the ETag for a user's lists. The tag changes every time the user's data does.
+     *
+     * @param userName   User the lists belong to
+     * @param generation Generation from before the lists were read
+     * @return Strong ETag including the quotes, or null if the user's data changed since the generation was read
+     */
+    public synchronized String etag(String userName, long generation) {
+        long version = version(userName);
+        if (version > generation) return null;
+        String user = Integer.toString(userName.hashCode() & Integer.MAX_VALUE, 36);
+        return "\"" + epoch + "-" + Long.toString(version, 36) + "-" + user + "\"";
+    }
+
+    /**
+     * Gets the ETag for one page of a user's lists. Each page has its own tag, so a client holding one page never gets
+     * 304 Not Modified for another.
+     *
+     * @param userName   User the lists belong to
+     * @param generation Generation from before the page was read
+     * @param limit      Page size asked for, 0 if none
+     * @param after      Cursor the page starts after, or null for the first page
+     * @return Strong ETag including the quotes, or null if the user's data changed since the generation was read
+     */
+    public String etag(String userName, long generation, int limit, String after) {
+        String etag = etag(userName, generation);
+        if (etag == null) return null;
+        String cursor = after == null ? "" : URLEncoder.encode(after, StandardCharsets.UTF_8); // No quotes or spaces
+        return etag.substring(0, etag.length() - 1) + "-" + limit + "-" + cursor + "\"";
+    }
+
+    /**
+     * Gets the size of the largest response worth caching. Anything larger would push out too much of the cache.
+     *
+     * @return Maximum bytes in one response
+     */
+    public long getMaxEntryBytes() {
+        return maxBytes / 4;
+    }
+
+    /**
+     * Caches a user's list, unless the user's data changed since the list was read or it is too large
+     *
+     * @param userName   User the list belongs to
+     * @param endpoint   {@link #PERSONS} or {@link #EVENTS}
+     * @param json       Serialized response
+     * @param generation Generation from before the list was read
+     */
+    public synchronized void put(String userName, String endpoint, byte[] json, long generation) {
+        if (version(userName) > generation || json.length > getMaxEntryBytes()) return;
+
+        byte[] old = entries.put(new Key(userName, endpoint), json);
+        if (old != null) bytes -= old.length;
+        bytes += json.length;
+
+        // Drop least recently used responses until the cache fits
+        Iterator<byte[]> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().length;
+            it.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Removes every cached list belonging to a user. Call after the user's data changes.
+     *
+     * @param userName User whose data changed
+     */
+    public synchronized void invalidateUser(String userName) {
+        Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, byte[]> entry = it.next();
+            if (entry.getKey().userName.equals(userName)) {
+                bytes -= entry.getValue().length;
+                it.remove();
+            }
+        }
+        versions.put(userName, ++generation);
+    }
+
+    /**
+     * Removes every cached list. Called when the database is cleared or loaded.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        versions.clear();
+        bytes = 0;
+        cleared = ++generation;
+    }
+
+    /**
+     * Gets the maximum number of bytes of cached json
+     *
+     * @return Maximum cache size in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Gets the number of bytes of json currently cached
+     *
+     * @return Current cache size in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of cached lists
+     *
+     * @return Current entry count
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of lists sent from the cache
+     *
+     * @return Hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lists that had to be read from the database
+     *
+     * @return Miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of lists dropped because the cache was full
+     *
+     * @return Eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * User and endpoint a cached list belongs to
+     */
+    private static class Key {
+        final String userName;
+        final String endpoint;
+
+        Key(String userName, String endpoint) {
+            this.userName = userName;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return userName.equals(key.userName) && endpoint.equals(key.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userName, endpoint);
+        }
+    }
+}
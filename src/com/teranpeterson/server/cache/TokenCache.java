@@ -0,0 +1,218 @@
+package com.teranpeterson.server.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of auth token to userName, checked before the AuthTokens table. Entries expire after a fixed time to
+ * live and the least recently used entry is dropped when the cache is full. The cache is cleared along with the
+ * database, and single tokens or all of a user's tokens can be invalidated.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class TokenCache {
+    /**
+     * Default maximum number of cached tokens
+     */
+    static final int DEFAULT_MAX_SIZE = 10000;
+    /**
+     * Default time a cached token is trusted before it is checked against the database again
+     */
+    static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private static TokenCache instance;
+
+    private final int maxSize;
+    private final long ttl;
+    private final Map<String, Cached> entries;
+
+    /**
+     * Bumped every time the cache is cleared, so lookups that started before a clear don't add stale tokens after it
+     */
+    private long generation;
+
+    // Metrics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache
+     *
+     * @param maxSize Maximum number of cached tokens
+     * @param ttl     Milliseconds a token stays cached
+     */
+    TokenCache(int maxSize, long ttl) {
+        if (maxSize < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() <= TokenCache.this.maxSize) return false;
+                ++evictions;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by the whole server, creating it on first use
+     *
+     * @return Shared token cache
+     */
+    public static synchronized TokenCache getInstance() {
+        if (instance == null) {
+            instance = new TokenCache(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the shared cache with an empty one of the given size and time to live
+     *
+     * @param maxSize Maximum number of cached tokens
+     * @param ttl     Milliseconds a token stays cached
+     */
+    public static synchronized void configure(int maxSize, long ttl) {
+        instance = new TokenCache(maxSize, ttl);
+    }
+
+    /**
+     * Looks up the user a token belongs to
+     *
+     * @param token Auth token
+     * @return userName of the token's owner, or null if the token isn't cached or has expired
+     */
+    public synchronized String get(String token) {
+        Cached entry = entries.get(token);
+        if (entry != null && entry.expires > System.currentTimeMillis()) {
+            ++hits;
+            return entry.userName;
+        }
+        if (entry != null) entries.remove(token);
+        ++misses;
+        return null;
+    }
+
+    /**
+     * Gets the current generation. Pass it to {@link #put(String, String, long)} when caching a token read from the
+     * database.
+     *
+     * @return Current generation
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a token that was just issued
+     *
+     * @param token    Auth token
+     * @param userName userName of the token's owner
+     */
+    public synchronized void put(String token, String userName) {
+        entries.put(token, new Cached(userName, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Caches a token read from the database, unless the cache was cleared since the read started
+     *
+     * @param token      Auth token
+     * @param userName   userName of the token's owner
+     * @param generation Generation from before the token was read
+     */
+    public synchronized void put(String token, String userName, long generation) {
+        if (generation == this.generation) put(token, userName);
+    }
+
+    /**
+     * Removes a single token, eg. on logout
+     *
+     * @param token Auth token
+     */
+    public synchronized void invalidate(String token) {
+        entries.remove(token);
+    }
+
+    /**
+     * Removes every token belonging to a user
+     *
+     * @param userName User to remove tokens for
+     */
+    public synchronized void invalidateUser(String userName) {
+        Iterator<Cached> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().userName.equals(userName)) it.remove();
+        }
+    }
+
+    /**
+     * Removes every token. Called when the database is cleared.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        ++generation;
+    }
+
+    /**
+     * Gets the maximum number of cached tokens
+     *
+     * @return Maximum cache size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of cached tokens, including expired ones that haven't been looked up since
+     *
+     * @return Current cache size
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache
+     *
+     * @return Hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that had to go to the database
+     *
+     * @return Miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of tokens dropped because the cache was full
+     *
+     * @return Eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Cached userName and the time it stops being trusted
+     */
+    private static class Cached {
+        final String userName;
+        final long expires;
+
+        Cached(String userName, long expires) {
+            this.userName = userName;
+            this.expires = expires;
+        }
+    }
+}
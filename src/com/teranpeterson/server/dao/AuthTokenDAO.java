@@ -1,19 +1,65 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.cache.TokenCache;
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.model.AuthToken;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Controller used to connect to and modify auth tokens in the database
+ * Controller used to connect to and modify auth tokens in the database. Tokens expire after the session timeout passes
+ * with no use. Each time a token is used its last use time moves forward, but only once a minute so reads don't turn into
+ * a write on every request.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.10
  */
 public class AuthTokenDAO {
+    /**
+     * Adds an auth token
+     */
+    static final String INSERT = "INSERT INTO `AuthTokens`(`token`,`userName`,`issued`,`last_used`) VALUES (?,?,?,?)";
+    /**
+     * Finds the user an auth token belongs to if the token hasn't expired
+     */
+    static final String VALIDATE = "SELECT * FROM `AuthTokens` WHERE `token` = ? AND `last_used` >= ?";
+    /**
+     * Moves a token's last use time forward
+     */
+    static final String TOUCH = "UPDATE `AuthTokens` SET `last_used` = ? WHERE `token` = ?";
+    /**
+     * Deletes a batch of tokens that haven't been used since the cutoff
+     */
+    static final String PURGE = "DELETE FROM `AuthTokens` WHERE `rowid` IN " +
+            "(SELECT `rowid` FROM `AuthTokens` WHERE `last_used` < ? LIMIT ?)";
+
+    /**
+     * Default time a token stays valid without being used
+     */
+    static final long DEFAULT_SESSION_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+    /**
+     * Minimum time between updates of a token's last use time
+     */
+    static final long TOUCH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static volatile long sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+    /**
+     * Last use times waiting to be written, by token
+     */
+    private static final ConcurrentMap<String, Long> touched = new ConcurrentHashMap<>();
+    /**
+     * Set while a thread is writing the waiting last use times
+     */
+    private static final AtomicBoolean flushing = new AtomicBoolean();
+
     /**
      * Connection to database
      */
@@ -26,17 +72,40 @@ public class AuthTokenDAO {
         this.conn = conn;
     }
 
+    /**
+     * Sets how long tokens stay valid without being used. Called once when the server starts.
+     *
+     * @param timeout Milliseconds a token stays valid after its last use
+     */
+    public static void configure(long timeout) {
+        if (timeout < 1) throw new IllegalArgumentException("Session timeout must be at least 1 millisecond");
+        sessionTimeout = timeout;
+    }
+
+    /**
+     * Gets how long tokens stay valid without being used
+     *
+     * @return Session timeout in milliseconds
+     */
+    public static long getSessionTimeout() {
+        return sessionTimeout;
+    }
+
     /**
      * Adds new authentication token to database
      *
      * @param token Authentication token for a given user
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void insert(AuthToken token) throws DAOException {
-        String sql = "INSERT INTO `AuthTokens`(`token`,`userName`) VALUES (?,?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("token-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
             stmt.setString(1, token.getToken());
             stmt.setString(2, token.getUserName());
+            long now = System.currentTimeMillis();
+            stmt.setLong(3, now);
+            stmt.setLong(4, now);
 
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -46,22 +115,42 @@ public class AuthTokenDAO {
     }
 
     /**
-     * Check if an authentication token is in the database
+     * Check if an authentication token is in the database and hasn't expired. Tokens are looked up in the
+     * {@link TokenCache} first and cached once they are found in the database. The cache never keeps a token longer than
+     * the session timeout, so a cached token can outlive its expiry by at most the touch interval.
      *
      * @param token Authentication token to look for
-     * @return True if the token is valid (in the database), otherwise false
+     * @return userName of the token's owner if the token is valid (in the database and unexpired), otherwise null
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public String validate(String token) throws DAOException {
-        ResultSet result = null;
+        try (Timing.Stage stage = Timing.stage("auth")) {
+            return lookup(token);
+        }
+    }
+
+    /**
+     * Looks a token up in the cache, then in the database
+     */
+    private String lookup(String token) throws DAOException {
+        TokenCache cache = TokenCache.getInstance();
+        String userName = cache.get(token);
+        if (userName != null) return userName;
+        long generation = cache.generation();
 
-        String sql = "SELECT * FROM `AuthTokens` WHERE `token` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        long now = System.currentTimeMillis();
+        ResultSet result = null;
+        try (PreparedStatement stmt = conn.prepareStatement(VALIDATE)) {
             stmt.setString(1, token);
+            stmt.setLong(2, now - sessionTimeout);
 
             result = stmt.executeQuery();
             if (result.next()) {
-                return result.getString("userName");
+                userName = result.getString("userName");
+                if (now - result.getLong("last_used") >= TOUCH_INTERVAL) touch(token, now);
+                cache.put(token, userName, generation);
+                return userName;
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -79,21 +168,65 @@ public class AuthTokenDAO {
         return null;
     }
 
-//    /**
-//     * Deletes an authentication token from the database. Tokens expire after an hour of no use
-//     *
-//     * @param token Authentication token to remove from database
-//     * @throws DAOException Problem executing sql statements
-//     */
-//    public void expire(AuthToken token) throws DAOException {
-//        String sql = "DELETE * FROM `AuthTokens` WHERE `token` = ?";
-//        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-//            stmt.setString(1, token.getToken());
-//
-//            stmt.executeUpdate();
-//        } catch (SQLException e) {
-//            e.printStackTrace();
-//            throw new DAOException("ERROR: Unable to expire token '" + token.getToken() + "' from database");
-//        }
-//    }
+    /**
+     * Queues a token's last use time to be moved forward so the session slides. The write is left to
+     * {@link #flushTouches(Database)} once the request's connection is released, so validating a token doesn't hold
+     * the write lock for the rest of the request.
+     *
+     * @param token Authentication token that was used
+     * @param now   Time the token was used
+     */
+    private void touch(String token, long now) {
+        touched.merge(token, now, Math::max);
+    }
+
+    /**
+     * Writes the queued last use times in a short transaction of its own. Only one thread writes at a time, others
+     * leave their tokens for it or the next flush. Best effort, since a token is valid whether or not its session
+     * slides, so errors are logged and the times are dropped.
+     *
+     * @param db Database to borrow a write connection from
+     */
+    static void flushTouches(Database db) {
+        if (touched.isEmpty() || !flushing.compareAndSet(false, true)) return;
+        try {
+            Connection conn = db.openWriteConnection();
+            try (PreparedStatement stmt = conn.prepareStatement(TOUCH)) {
+                for (Map.Entry<String, Long> entry : touched.entrySet()) {
+                    if (!touched.remove(entry.getKey(), entry.getValue())) continue; // Used again, write it next time
+                    stmt.setLong(1, entry.getValue());
+                    stmt.setString(2, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            db.closeConnection(true);
+        } catch (DAOException | SQLException e) {
+            e.printStackTrace();
+        } finally {
+            db.release();
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Deletes up to one batch of tokens that haven't been used since the cutoff. The caller is responsible for
+     * committing, so each batch holds the write lock only briefly.
+     *
+     * @param cutoff Tokens last used before this time are deleted
+     * @param limit  Maximum number of tokens to delete
+     * @return Number of tokens deleted
+     * @throws DAOException Problem executing sql statements
+     */
+    public int purgeExpired(long cutoff, int limit) throws DAOException {
+        try (PreparedStatement stmt = conn.prepareStatement(PURGE)) {
+            stmt.setLong(1, cutoff);
+            stmt.setInt(2, limit);
+
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to purge expired tokens from database");
+        }
+    }
 }
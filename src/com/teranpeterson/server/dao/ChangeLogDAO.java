@@ -0,0 +1,160 @@
+package com.teranpeterson.server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Controller for the change log used by /sync. Every person or event inserted is logged under its user with a version
+ * that only ever goes up, so a client can ask for what was added since the last version it saw.
+ * <p>
+ * Persons and events are only ever deleted a whole tree at a time, so deletes are logged as a reset of the user instead
+ * of one row per record. A reset also compacts the log, since the user's older changes no longer matter: a client that
+ * last synced before the reset is sent a full snapshot. Clearing the database logs a reset for every user.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class ChangeLogDAO {
+    /**
+     * Type of change for an inserted person
+     */
+    static final String PERSON = "person";
+    /**
+     * Type of change for an inserted event
+     */
+    static final String EVENT = "event";
+
+    /**
+     * Logs an inserted record
+     */
+    static final String INSERT = "INSERT INTO `Changes`(`descendant`,`type`,`record_id`) VALUES (?,?,?)";
+    /**
+     * Removes a user's changes before their tree is reset
+     */
+    static final String COMPACT = "DELETE FROM `Changes` WHERE `descendant` = ?";
+    /**
+     * Logs that a user's tree was deleted
+     */
+    static final String RESET = "INSERT INTO `Changes`(`descendant`,`type`) VALUES (?,'reset')";
+    /**
+     * Logs that every user's tree was deleted
+     */
+    static final String RESET_ALL = "INSERT INTO `Changes`(`descendant`,`type`) VALUES (NULL,'reset')";
+    /**
+     * Finds the newest version
+     */
+    static final String LATEST = "SELECT MAX(`version`) FROM `Changes`";
+    /**
+     * Finds the version of a user's last reset
+     */
+    static final String USER_FLOOR = "SELECT MAX(`version`) FROM `Changes` WHERE `descendant` = ? AND `type` = 'reset'";
+    /**
+     * Finds the version of the last reset of every user
+     */
+    static final String GLOBAL_FLOOR = "SELECT MAX(`version`) FROM `Changes` WHERE `descendant` IS NULL AND `type` = 'reset'";
+
+    /**
+     * Connection to database
+     */
+    private Connection conn;
+
+    /**
+     * Creates a dao with a database connection
+     */
+    public ChangeLogDAO(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Logs a batch of inserted records. Records without a descendant don't belong to any user's tree and aren't logged.
+     *
+     * @param type       {@link #PERSON} or {@link #EVENT}
+     * @param records    Records that were inserted
+     * @param descendant Gets the user a record belongs to
+     * @param id         Gets a record's id
+     * @throws DAOException Problem executing sql statements
+     */
+    <T> void inserted(String type, List<T> records, Function<T, String> descendant, Function<T, String> id)
+            throws DAOException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            boolean any = false;
+            for (T record : records) {
+                if (descendant.apply(record) == null) continue;
+                stmt.setString(1, descendant.apply(record));
+                stmt.setString(2, type);
+                stmt.setString(3, id.apply(record));
+                stmt.addBatch();
+                any = true;
+            }
+            if (any) stmt.executeBatch();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to log " + records.size() + " changes in database");
+        }
+    }
+
+    /**
+     * Logs that a user's tree was deleted and drops their older changes
+     *
+     * @param userName User whose tree was deleted
+     * @throws DAOException Problem executing sql statements
+     */
+    void reset(String userName) throws DAOException {
+        try (PreparedStatement compact = conn.prepareStatement(COMPACT);
+             PreparedStatement reset = conn.prepareStatement(RESET)) {
+            compact.setString(1, userName);
+            compact.executeUpdate();
+            reset.setString(1, userName);
+            reset.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to log reset for user '" + userName + "' in database");
+        }
+    }
+
+    /**
+     * Gets the newest version in the log. A client that has synced up to this version has every change so far.
+     *
+     * @return Newest version
+     * @throws DAOException Problem executing sql statements
+     */
+    public long latest() throws DAOException {
+        try (PreparedStatement stmt = conn.prepareStatement(LATEST)) {
+            return max(stmt);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to read change log from database");
+        }
+    }
+
+    /**
+     * Gets the oldest version a user's changes can be sent from. Clients that last synced before it need a snapshot.
+     *
+     * @param userName User to check
+     * @return Version of the user's last reset
+     * @throws DAOException Problem executing sql statements
+     */
+    public long floor(String userName) throws DAOException {
+        try (PreparedStatement user = conn.prepareStatement(USER_FLOOR);
+             PreparedStatement global = conn.prepareStatement(GLOBAL_FLOOR)) {
+            user.setString(1, userName);
+            return Math.max(max(user), max(global));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to read change log for user '" + userName + "' from database");
+        }
+    }
+
+    /**
+     * Runs a MAX query, treating an empty result as 0
+     */
+    private static long max(PreparedStatement stmt) throws SQLException {
+        try (ResultSet result = stmt.executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+}
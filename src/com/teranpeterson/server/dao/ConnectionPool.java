@@ -0,0 +1,417 @@
+package com.teranpeterson.server.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of long-lived connections to the database. Connections are checked out with {@link #borrow()} and handed
+ * back with {@link #release(Connection)} instead of being opened and closed for every request. Idle connections are
+ * validated before they are handed out and closed once they have been idle for too long. Each connection keeps its
+ * prepared statements open in a {@link StatementCache} for as long as it lives.
+ *
+ * @author Teran Peterson
+ * @version v0.1.1
+ */
+public class ConnectionPool {
+    /**
+     * Location of the database used by the server
+     */
+    static final String URL = "jdbc:sqlite:resources/database/FamilyMap.db";
+    /**
+     * Default maximum number of open connections
+     */
+    static final int DEFAULT_MAX_SIZE = 8;
+    /**
+     * Default time a connection may sit idle before it is closed
+     */
+    static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * Default time to wait for a connection when the pool is exhausted
+     */
+    static final long DEFAULT_BORROW_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * Seconds a connection waits for another connection's write lock before giving up
+     */
+    static final int BUSY_TIMEOUT = 10;
+
+    private static ConnectionPool instance;
+
+    static {
+        try {
+            Class.forName("org.sqlite.JDBC"); // Driver used to connect to the database
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private final String url;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+
+    /**
+     * Idle connections, most recently returned first
+     */
+    private final Deque<Idle> idle = new ArrayDeque<>();
+    /**
+     * Number of open connections, idle or checked out
+     */
+    private int size;
+    private boolean closed;
+
+    // Metrics
+    private long borrowed;
+    private long created;
+    private long evicted;
+    private long invalid;
+    private long timeouts;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    /**
+     * Creates a pool for the given database
+     *
+     * @param url           JDBC url of the database
+     * @param maxSize       Maximum number of open connections
+     * @param idleTimeout   Milliseconds a connection may sit idle before it is closed
+     * @param borrowTimeout Milliseconds to wait for a connection when the pool is exhausted
+     */
+    ConnectionPool(String url, int maxSize, long idleTimeout, long borrowTimeout) {
+        if (maxSize < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+        this.url = url;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Gets the pool shared by the whole server, creating it on first use
+     *
+     * @return Shared connection pool
+     */
+    public static synchronized ConnectionPool getInstance() {
+        if (instance == null) {
+            instance = new ConnectionPool(URL, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT);
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the shared pool with one of the given size. Idle connections in the old pool are closed.
+     *
+     * @param maxSize Maximum number of open connections
+     */
+    public static synchronized void configure(int maxSize) {
+        if (instance != null) instance.close();
+        instance = new ConnectionPool(URL, maxSize, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT);
+    }
+
+    /**
+     * Checks out a connection. Reuses an idle connection if one is available, otherwise opens a new one if the pool is not
+     * full, otherwise waits for another thread to return one. Connections are handed out with auto commit turned off.
+     *
+     * @return Open connection to the database
+     * @throws DAOException Pool is closed, timed out waiting or unable to open a connection
+     */
+    public Connection borrow() throws DAOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeout);
+
+        while (true) {
+            Connection conn = null;
+            synchronized (this) {
+                evictIdle();
+                while (!closed && idle.isEmpty() && size >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        ++timeouts;
+                        throw new DAOException("ERROR: Timed out waiting for a database connection");
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DAOException("ERROR: Interrupted waiting for a database connection");
+                    }
+                }
+                if (closed) throw new DAOException("ERROR: Connection pool is closed");
+
+                if (!idle.isEmpty()) {
+                    conn = idle.pop().conn;
+                } else {
+                    ++size; // Reserve a slot, the connection is opened outside the lock
+                }
+            }
+
+            if (conn == null) {
+                conn = open();
+            } else if (!validate(conn)) {
+                synchronized (this) {
+                    ++invalid;
+                }
+                discard(conn);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            synchronized (this) {
+                ++borrowed;
+                totalWaitNanos += waited;
+                if (waited > maxWaitNanos) maxWaitNanos = waited;
+            }
+            return conn;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. The caller must have already committed or rolled back its work.
+     *
+     * @param conn Connection previously checked out with {@link #borrow()}
+     */
+    public void release(Connection conn) {
+        synchronized (this) {
+            if (!closed) {
+                idle.push(new Idle(conn, System.currentTimeMillis()));
+                notify();
+                return;
+            }
+        }
+        discard(conn);
+    }
+
+    /**
+     * Closes a connection that is broken or no longer wanted and frees its slot in the pool
+     *
+     * @param conn Connection previously checked out with {@link #borrow()}
+     */
+    public void discard(Connection conn) {
+        close(conn);
+        synchronized (this) {
+            --size;
+            notify();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout. Called whenever a connection is borrowed.
+     */
+    public synchronized void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+        Iterator<Idle> oldest = idle.descendingIterator();
+        while (oldest.hasNext()) {
+            Idle entry = oldest.next();
+            if (entry.since > cutoff) break;
+            oldest.remove();
+            close(entry.conn);
+            --size;
+            ++evicted;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops handing out new ones. Connections still checked out are closed when they are
+     * returned.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Idle entry : idle) {
+            close(entry.conn);
+            --size;
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    /**
+     * Opens a new connection with auto commit turned off. Connections use write-ahead logging so requests reading on
+     * one connection aren't blocked by a request writing on another, and wait for locks instead of failing right away.
+     * The connection is wrapped so its prepared statements are cached.
+     *
+     * @return New connection to the database
+     * @throws DAOException Problem establishing connection
+     */
+    private Connection open() throws DAOException {
+        try {
+            Connection conn = DriverManager.getConnection(url);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+                stmt.setQueryTimeout(BUSY_TIMEOUT);
+            }
+            conn.setAutoCommit(false);
+            synchronized (this) {
+                ++created;
+            }
+            return StatementCache.wrap(conn, StatementCache.DEFAULT_MAX_SIZE, statementHits, statementMisses);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            synchronized (this) {
+                --size;
+                notify();
+            }
+            throw new DAOException("ERROR: Unable to establish connection to database");
+        }
+    }
+
+    /**
+     * Checks that an idle connection still works before it is handed out
+     *
+     * @param conn Connection to check
+     * @return True if the connection is usable, otherwise false
+     */
+    private boolean validate(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            if (conn.isClosed()) return false;
+            stmt.execute("SELECT 1");
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the maximum number of open connections
+     *
+     * @return Maximum pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of open connections, idle or checked out
+     *
+     * @return Current pool size
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of connections waiting in the pool
+     *
+     * @return Idle connection count
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of connections currently checked out
+     *
+     * @return Active connection count
+     */
+    public synchronized int getActiveCount() {
+        return size - idle.size();
+    }
+
+    /**
+     * Gets the number of successful borrows since the pool was created
+     *
+     * @return Borrow count
+     */
+    public synchronized long getBorrowCount() {
+        return borrowed;
+    }
+
+    /**
+     * Gets the number of connections opened since the pool was created
+     *
+     * @return Created connection count
+     */
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * Gets the number of connections closed for being idle too long
+     *
+     * @return Evicted connection count
+     */
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * Gets the number of idle connections that failed validation
+     *
+     * @return Invalid connection count
+     */
+    public synchronized long getInvalidCount() {
+        return invalid;
+    }
+
+    /**
+     * Gets the number of borrows that gave up waiting for a connection
+     *
+     * @return Timeout count
+     */
+    public synchronized long getTimeoutCount() {
+        return timeouts;
+    }
+
+    /**
+     * Gets the total time spent waiting to borrow connections
+     *
+     * @return Total wait in nanoseconds
+     */
+    public synchronized long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    /**
+     * Gets the longest time spent waiting to borrow a connection
+     *
+     * @return Maximum wait in nanoseconds
+     */
+    public synchronized long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * Gets the number of prepared statements reused from a connection's statement cache
+     *
+     * @return Statement cache hit count
+     */
+    public long getStatementHits() {
+        return statementHits.get();
+    }
+
+    /**
+     * Gets the number of statements that had to be prepared because they weren't cached or were in use
+     *
+     * @return Statement cache miss count
+     */
+    public long getStatementMisses() {
+        return statementMisses.get();
+    }
+
+    /**
+     * Idle connection and the time it was returned to the pool
+     */
+    private static class Idle {
+        final Connection conn;
+        final long since;
+
+        Idle(Connection conn, long since) {
+            this.conn = conn;
+            this.since = since;
+        }
+    }
+}
@@ -4,10 +4,15 @@ package com.teranpeterson.server.dao;
  * Exception thrown by database errors
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.2
  */
 public class DAOException extends Exception {
-    DAOException(String message) {
+    /**
+     * Creates an exception with a message for the client
+     *
+     * @param message Message starting with ERROR:
+     */
+    public DAOException(String message) {
         super(message);
     }
 }
\ No newline at end of file
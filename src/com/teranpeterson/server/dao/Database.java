@@ -1,203 +1,199 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.cache.ResponseCache;
+import com.teranpeterson.server.cache.TokenCache;
+import com.teranpeterson.server.metrics.Timing;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 /**
- * Creates and maintains a connection to the database used by the server
+ * Checks out and returns connections to the database used by the server. Connections come from a shared
+ * {@link ConnectionPool} so they stay open between requests.
  *
  * @author Teran Peterson
- * @version v0.1.7
+ * @version v0.1.19
  */
 public class Database {
+    /**
+     * Pool the connection is borrowed from
+     */
+    private final ConnectionPool pool;
     /**
      * Connection to database
      */
     private Connection conn;
 
-    static {
-        try {
-            Class.forName("org.sqlite.JDBC"); // Driver used to connect to the database
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Creates a database that borrows connections from the shared pool
+     */
+    public Database() {
+        this(ConnectionPool.getInstance());
     }
 
     /**
-     * Establishes a connection to the database
+     * Creates a database that borrows connections from the given pool
+     *
+     * @param pool Pool to borrow connections from
+     */
+    Database(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks out a connection to the database from the pool
      *
      * @throws DAOException Problem establishing connection
      */
+    @SuppressWarnings("try")
     public Connection openConnection() throws DAOException {
-        try {
-            conn = DriverManager.getConnection("jdbc:sqlite:resources/database/FamilyMap.db");
-            conn.setAutoCommit(false);
+        try (Timing.Stage stage = Timing.stage("db-open")) {
+            conn = pool.borrow();
+        }
+        return conn;
+    }
+
+    /**
+     * Checks out a connection for a transaction that writes. The write lock is taken up front, waiting for other writers
+     * to finish, instead of on the first write. SQLite can't upgrade a transaction that has already read once another
+     * connection has written, and fails it right away instead of waiting, so transactions that read before they write
+     * would otherwise fail whenever they overlap with another write.
+     *
+     * @throws DAOException Problem establishing connection or timed out waiting for other writers
+     */
+    @SuppressWarnings("try")
+    public Connection openWriteConnection() throws DAOException {
+        openConnection();
+        try (Timing.Stage stage = Timing.stage("db-lock");
+             Statement stmt = conn.createStatement()) {
+            // The driver has already begun a deferred transaction, which hasn't touched the database yet
+            stmt.execute("COMMIT");
+            try {
+                stmt.execute("BEGIN IMMEDIATE");
+            } catch (SQLException e) {
+                stmt.execute("BEGIN"); // Leave the connection in the transaction the driver expects
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            throw new DAOException("ERROR: Unable to establish connection to database");
+            closeConnection(false);
+            throw new DAOException("ERROR: Timed out waiting to write to the database");
         }
         return conn;
     }
 
     /**
-     * Closes the connection to the database
+     * Ends the current transaction and returns the connection to the pool, then writes any auth token use times queued
+     * while it was out. Does nothing if the connection was already returned.
      *
      * @param commit True pushes changes to database, false rolls back
      * @throws DAOException Problem closing connection
      */
+    @SuppressWarnings("try")
     public void closeConnection(boolean commit) throws DAOException {
-        try {
+        if (conn == null) return;
+
+        Connection finished = conn;
+        conn = null;
+        try (Timing.Stage stage = Timing.stage(commit ? "db-commit" : "db-rollback")) {
             if (commit) {
-                conn.commit();
+                finished.commit();
             } else {
-                conn.rollback();
+                finished.rollback();
             }
 
-            conn.close();
-            conn = null;
+            pool.release(finished);
         } catch (SQLException e) {
             e.printStackTrace();
+            try {
+                finished.rollback();
+            } catch (SQLException r) {
+                r.printStackTrace();
+            }
+            pool.discard(finished);
             throw new DAOException("ERROR: Unable to close connection to database");
         }
+        AuthTokenDAO.flushTouches(new Database(pool));
     }
 
-    public void createTables() throws DAOException {
-        // Create Persons table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS 'Persons' ( `person_id` TEXT NOT NULL UNIQUE, `descendant` TEXT, " +
-                    "`firstName` TEXT NOT NULL, `lastName` TEXT NOT NULL, `gender` TEXT NOT NULL, " +
-                    "`father` TEXT, `mother` TEXT, `spouse` TEXT, PRIMARY KEY(`person_id`) )";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to create persons table");
-        }
-
-        // Create Users table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS 'Users' ( `userName` TEXT NOT NULL UNIQUE, `password` TEXT NOT NULL, " +
-                    "`email` TEXT NOT NULL, `firstName` TEXT NOT NULL, `lastName` TEXT NOT NULL, `gender` TEXT NOT NULL CHECK(gender == 'f' OR gender == 'm'), " +
-                    "`person_id` TEXT NOT NULL, PRIMARY KEY(`userName`) )";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
+    /**
+     * Rolls back and returns the connection if it is still checked out, without throwing. Meant for finally blocks, so
+     * the connection goes back to the pool, and any write lock is let go, even when a runtime exception skips the
+     * normal close. Does nothing if the connection was already returned.
+     */
+    public void release() {
+        try {
             closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to create users table");
-        }
-
-        // Create Events table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS `Events` ( `event_id` TEXT NOT NULL UNIQUE, `descendant` TEXT, " +
-                    "`person_id` TEXT NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL, `country` TEXT NOT NULL, " +
-                    "`city` TEXT NOT NULL, `eventType` TEXT NOT NULL, `year` INTEGER NOT NULL, PRIMARY KEY(`event_id`) )";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
         } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
             e.printStackTrace();
-            throw new DAOException("ERROR: Unable to create events table");
         }
+    }
 
-        // Create AuthTokens table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS `AuthTokens` ( `token` TEXT NOT NULL UNIQUE, `userName` TEXT NOT NULL, PRIMARY KEY(`token`) )";
-
-            stmt.executeUpdate(sql);
+    /**
+     * Brings the database schema up to date by running any pending migrations in a single transaction. Called once when
+     * the server starts, so requests never run DDL.
+     *
+     * @throws DAOException Problem migrating the schema
+     */
+    @SuppressWarnings("try")
+    public void createTables() throws DAOException {
+        openWriteConnection();
+        try (Timing.Stage stage = Timing.stage("create-tables")) {
+            SchemaMigrator.migrate(conn);
             closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to create auth tokens table");
+        } finally {
+            release();
         }
     }
 
+    /**
+     * Deletes ALL rows from the user data tables in a single transaction. The tables and schema version are kept so the
+     * database doesn't need to be migrated again. Cached auth tokens and responses are dropped too. Expects the schema to
+     * be up to date, see {@link #createTables()}.
+     *
+     * @throws DAOException Problem executing sql statements
+     */
     public void clear() throws DAOException {
-        // Delete Persons table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "DROP TABLE IF EXISTS `Persons`";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to drop persons table");
-        }
-
-        // Delete Users table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "DROP TABLE IF EXISTS `Users`";
-
-            stmt.executeUpdate(sql);
+        openClearedConnection();
+        try {
             closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to drop users table");
+            clearCaches();
+        } finally {
+            release();
         }
+    }
 
-        // Delete Events table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "DROP TABLE IF EXISTS `Events`";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
+    /**
+     * Checks out a connection for a write transaction that starts by deleting ALL rows from the user data tables, so the
+     * data can be replaced in the same transaction. Nothing is deleted unless the transaction is committed. Call
+     * {@link #clearCaches()} after committing.
+     *
+     * @return Connection with the delete pending
+     * @throws DAOException Problem establishing connection or executing sql statements
+     */
+    @SuppressWarnings("try")
+    public Connection openClearedConnection() throws DAOException {
+        openWriteConnection();
+        try (Timing.Stage stage = Timing.stage("clear");
+             Statement stmt = conn.createStatement()) {
+            for (String table : SchemaMigrator.DATA_TABLES) {
+                stmt.executeUpdate("DELETE FROM `" + table + "`");
+            }
+            stmt.executeUpdate(ChangeLogDAO.RESET_ALL); // Clients syncing after this need a snapshot
+            return conn;
         } catch (SQLException e) {
-            closeConnection(false);
             e.printStackTrace();
-            throw new DAOException("ERROR: Unable to drop events table");
+            release();
+            throw new DAOException("ERROR: Unable to clear database");
         }
+    }
 
-        // Delete Users table
-        openConnection();
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "DROP TABLE IF EXISTS `AuthTokens`";
-
-            stmt.executeUpdate(sql);
-            closeConnection(true);
-        } catch (DAOException e) {
-            closeConnection(false);
-            throw e;
-        } catch (SQLException e) {
-            closeConnection(false);
-            e.printStackTrace();
-            throw new DAOException("ERROR: Unable to drop auth tokens table");
-        }
+    /**
+     * Drops cached auth tokens and responses once a clear has been committed
+     */
+    public static void clearCaches() {
+        TokenCache.getInstance().clear();
+        ResponseCache.getInstance().clear();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.model.Event;
 
 import java.sql.Connection;
@@ -7,15 +8,46 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Controller used to connect to and modify events in the database
+ * Controller used to connect to and modify events in the database. Inserts and deletes are recorded in the change log
+ * used by /sync, see {@link ChangeLogDAO}.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.10
  */
 public class EventDAO {
+    /**
+     * Adds an event
+     */
+    static final String INSERT = "INSERT INTO `Events`(`event_id`,`descendant`,`person_id`,`latitude`,`longitude`,`country`,`city`,`eventType`,`year`) VALUES (?,?,?,?,?,?,?,?,?)";
+    /**
+     * Finds an event by id
+     */
+    static final String FIND = "SELECT * FROM `Events` WHERE `event_id` = ?";
+    /**
+     * Finds every event related to a user
+     */
+    static final String FIND_EVENTS = "SELECT * FROM `Events` WHERE `descendant` = ?";
+    /**
+     * Finds one page of the events related to a user, in id order, starting after the given id
+     */
+    static final String FIND_EVENTS_PAGE = "SELECT * FROM `Events` WHERE `descendant` = ? AND `event_id` > ? ORDER BY `event_id` LIMIT ?";
+    /**
+     * Deletes every event related to a user
+     */
+    static final String DELETE_EVENTS = "DELETE FROM `Events` WHERE `descendant` = ?";
+    /**
+     * Finds the events added to a user's tree after a change log version, in the order they were added
+     */
+    static final String FIND_EVENTS_SINCE = "SELECT `Events`.* FROM `Changes` " +
+            "JOIN `Events` ON `Events`.`event_id` = `Changes`.`record_id` " +
+            "WHERE `Changes`.`descendant` = ? AND `Changes`.`type` = 'event' AND `Changes`.`version` > ? " +
+            "ORDER BY `Changes`.`version`";
+
     /**
      * Connection to database
      */
@@ -34,26 +66,41 @@ public class EventDAO {
      * @param event Event to add to the database
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void insert(Event event) throws DAOException {
-        String sql = "INSERT INTO `Events`(`event_id`,`descendant`,`person_id`,`latitude`,`longitude`,`country`,`city`,`eventType`,`year`) VALUES (?,?,?,?,?,?,?,?,?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, event.getEventID());
-            stmt.setString(2, event.getDescendant());
-            stmt.setString(3, event.getPersonID());
-            stmt.setDouble(4, event.getLatitude());
-            stmt.setDouble(5, event.getLongitude());
-            stmt.setString(6, event.getCountry());
-            stmt.setString(7, event.getCity());
-            stmt.setString(8, event.getEventType());
-            stmt.setInt(9, event.getYear());
-
+        try (Timing.Stage stage = Timing.stage("event-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            bind(stmt, event);
             stmt.executeUpdate();
+            logInserts(Collections.singletonList(event));
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to insert event '" + event.getEventID() + "' into database");
         }
     }
 
+    /**
+     * Adds a list of events to the database in a single batch. The caller commits them together.
+     *
+     * @param events Events to add to the database
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public void insertAll(List<Event> events) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("event-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            for (Event event : events) {
+                bind(stmt, event);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            logInserts(events);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to insert " + events.size() + " events into database");
+        }
+    }
+
     /**
      * Find an event in the database
      *
@@ -61,18 +108,17 @@ public class EventDAO {
      * @return If the event is found, return it, otherwise return null
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public Event find(String eventID) throws DAOException {
         ResultSet result = null;
 
-        String sql = "SELECT * FROM `Events` WHERE `event_id` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("event-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND)) {
             stmt.setString(1, eventID);
 
             result = stmt.executeQuery();
             if (result.next()) {
-                return new Event(result.getString("event_id"), result.getString("descendant"), result.getString("person_id"),
-                        result.getDouble("latitude"), result.getDouble("longitude"), result.getString("country"),
-                        result.getString("city"), result.getString("eventType"), result.getInt("year"));
+                return read(result);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -99,30 +145,91 @@ public class EventDAO {
      */
     public List<Event> personEvents(String userName) throws DAOException {
         List<Event> list = new ArrayList<>();
-        ResultSet result = null;
+        forEachEvent(userName, list::add);
+        return list;
+    }
 
-        String sql = "SELECT * FROM `Events` WHERE `descendant` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Reads all events related to a user one row at a time and passes each one to an action, without building a list
+     *
+     * @param userName userName of the user to find events for
+     * @param action   Called with each event in the order they are read
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public void forEachEvent(String userName, Consumer<Event> action) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("event-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_EVENTS)) {
             stmt.setString(1, userName);
-
-            result = stmt.executeQuery();
-            while (result.next()) {
-                list.add(new Event(result.getString("event_id"), result.getString("descendant"), result.getString("person_id"),
-                        result.getDouble("latitude"), result.getDouble("longitude"), result.getString("country"),
-                        result.getString("city"), result.getString("eventType"), result.getInt("year")));
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    action.accept(read(result));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to find events for user '" + userName + "' in database");
-        } finally {
-            if (result != null) {
-                try {
-                    result.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads one page of the events related to a user in id order and passes each one to an action. Pages are found by
+     * id rather than by offset, so reading a page costs the same no matter how far into the list it is.
+     *
+     * @param userName userName of the user to find events for
+     * @param after    Id the page starts after, or null for the first page
+     * @param limit    Maximum number of events in the page
+     * @param action   Called with each event in id order
+     * @return Id to pass as after to get the next page, or null if this is the last page
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public String forEachEvent(String userName, String after, int limit, Consumer<Event> action) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("event-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_EVENTS_PAGE)) {
+            stmt.setString(1, userName);
+            stmt.setString(2, after == null ? "" : after);
+            stmt.setInt(3, limit + 1); // One extra row tells whether there is another page
+            try (ResultSet result = stmt.executeQuery()) {
+                String last = null;
+                for (int count = 0; result.next(); ++count) {
+                    if (count == limit) return last;
+                    Event event = read(result);
+                    action.accept(event);
+                    last = event.getEventID();
                 }
+                return null;
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to find events for user '" + userName + "' in database");
+        }
+    }
 
+    /**
+     * Finds the events added to a user's tree since a change log version. Only valid if the user's tree hasn't been
+     * reset since then, see {@link ChangeLogDAO#floor(String)}.
+     *
+     * @param userName userName of the user to find events for
+     * @param since    Last version the client has
+     * @return Events added after that version, in the order they were added
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public List<Event> findEventsSince(String userName, long since) throws DAOException {
+        List<Event> list = new ArrayList<>();
+        try (Timing.Stage stage = Timing.stage("event-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_EVENTS_SINCE)) {
+            stmt.setString(1, userName);
+            stmt.setLong(2, since);
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    list.add(read(result));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to find events for user '" + userName + "' in database");
         }
         return list;
     }
@@ -133,15 +240,48 @@ public class EventDAO {
      * @param userName User to delete events for
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void deleteEvents(String userName) throws DAOException {
-        String sql = "DELETE FROM `Events` WHERE `descendant` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("event-write");
+             PreparedStatement stmt = conn.prepareStatement(DELETE_EVENTS)) {
             stmt.setString(1, userName);
 
             stmt.executeUpdate();
+            new ChangeLogDAO(conn).reset(userName);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to delete events for user '" + userName + "' from database");
         }
     }
+
+    /**
+     * Logs inserted events in the change log used by /sync
+     */
+    private void logInserts(List<Event> events) throws DAOException {
+        new ChangeLogDAO(conn).inserted(ChangeLogDAO.EVENT, events, Event::getDescendant, Event::getEventID);
+    }
+
+    /**
+     * Sets the parameters of an insert statement to the fields of an event
+     */
+    private static void bind(PreparedStatement stmt, Event event) throws SQLException {
+        stmt.setString(1, event.getEventID());
+        stmt.setString(2, event.getDescendant());
+        stmt.setString(3, event.getPersonID());
+        stmt.setDouble(4, event.getLatitude());
+        stmt.setDouble(5, event.getLongitude());
+        stmt.setString(6, event.getCountry());
+        stmt.setString(7, event.getCity());
+        stmt.setString(8, event.getEventType());
+        stmt.setInt(9, event.getYear());
+    }
+
+    /**
+     * Builds an event from the current row of a result set
+     */
+    private static Event read(ResultSet result) throws SQLException {
+        return new Event(result.getString("event_id"), result.getString("descendant"), result.getString("person_id"),
+                result.getDouble("latitude"), result.getDouble("longitude"), result.getString("country"),
+                result.getString("city"), result.getString("eventType"), result.getInt("year"));
+    }
 }
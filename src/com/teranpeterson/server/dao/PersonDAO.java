@@ -1,5 +1,6 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.model.Person;
 
 import java.util.ArrayList;
@@ -7,15 +8,46 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Controller used to connect to and modify persons in the database
+ * Controller used to connect to and modify persons in the database. Inserts and deletes are recorded in the change log
+ * used by /sync, see {@link ChangeLogDAO}.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.10
  */
 public class PersonDAO {
+    /**
+     * Adds a person
+     */
+    static final String INSERT = "INSERT INTO `Persons`(`person_id`,`descendant`,`firstName`,`lastName`,`gender`,`father`,`mother`,`spouse`) VALUES (?,?,?,?,?,?,?,?)";
+    /**
+     * Finds a person by id
+     */
+    static final String FIND = "SELECT * FROM `Persons` WHERE `person_id` = ?";
+    /**
+     * Finds every person related to a user
+     */
+    static final String FIND_RELATIVES = "SELECT * FROM `Persons` WHERE `descendant` = ?";
+    /**
+     * Finds one page of the persons related to a user, in id order, starting after the given id
+     */
+    static final String FIND_RELATIVES_PAGE = "SELECT * FROM `Persons` WHERE `descendant` = ? AND `person_id` > ? ORDER BY `person_id` LIMIT ?";
+    /**
+     * Deletes every person related to a user
+     */
+    static final String DELETE_RELATIVES = "DELETE FROM `Persons` WHERE `descendant` = ?";
+    /**
+     * Finds the persons added to a user's tree after a change log version, in the order they were added
+     */
+    static final String FIND_RELATIVES_SINCE = "SELECT `Persons`.* FROM `Changes` " +
+            "JOIN `Persons` ON `Persons`.`person_id` = `Changes`.`record_id` " +
+            "WHERE `Changes`.`descendant` = ? AND `Changes`.`type` = 'person' AND `Changes`.`version` > ? " +
+            "ORDER BY `Changes`.`version`";
+
     /**
      * Connection to database
      */
@@ -34,25 +66,41 @@ public class PersonDAO {
      * @param person Person to add to the database
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void insert(Person person) throws DAOException {
-        String sql = "INSERT INTO `Persons`(`person_id`,`descendant`,`firstName`,`lastName`,`gender`,`father`,`mother`,`spouse`) VALUES (?,?,?,?,?,?,?,?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, person.getPersonID());
-            stmt.setString(2, person.getDescendant());
-            stmt.setString(3, person.getFirstName());
-            stmt.setString(4, person.getLastName());
-            stmt.setString(5, person.getGender());
-            stmt.setString(6, person.getFather());
-            stmt.setString(7, person.getMother());
-            stmt.setString(8, person.getSpouse());
-
+        try (Timing.Stage stage = Timing.stage("person-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            bind(stmt, person);
             stmt.executeUpdate();
+            logInserts(Collections.singletonList(person));
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to insert person '" + person.getPersonID() + "' into database");
         }
     }
 
+    /**
+     * Adds a list of persons to the database in a single batch. The caller commits them together.
+     *
+     * @param persons Persons to add to the database
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public void insertAll(List<Person> persons) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("person-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            for (Person person : persons) {
+                bind(stmt, person);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            logInserts(persons);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to insert " + persons.size() + " persons into database");
+        }
+    }
+
     /**
      * Find a person in the database
      *
@@ -60,17 +108,17 @@ public class PersonDAO {
      * @return If the person is found, return it, otherwise null
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public Person find(String personID) throws DAOException {
         ResultSet result = null;
 
-        String sql = "SELECT * FROM `Persons` WHERE `person_id` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("person-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND)) {
             stmt.setString(1, personID);
 
             result = stmt.executeQuery();
             if (result.next()) {
-                return new Person(result.getString("person_id"), result.getString("descendant"), result.getString("firstName"),
-                        result.getString("lastName"), result.getString("gender"), result.getString("father"), result.getString("mother"), result.getString("spouse"));
+                return read(result);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -95,28 +143,91 @@ public class PersonDAO {
      */
     public List<Person> findRelatives(String userName) throws DAOException {
         List<Person> list = new ArrayList<>();
-        ResultSet result = null;
+        forEachRelative(userName, list::add);
+        return list;
+    }
 
-        String sql = "SELECT * FROM `Persons` WHERE `descendant` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Reads all persons related to a user one row at a time and passes each one to an action, without building a list
+     *
+     * @param userName userName of the user to find persons for
+     * @param action   Called with each person in the order they are read
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public void forEachRelative(String userName, Consumer<Person> action) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("person-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_RELATIVES)) {
             stmt.setString(1, userName);
-            result = stmt.executeQuery();
-            while (result.next()) {
-                list.add(new Person(result.getString("person_id"), result.getString("descendant"), result.getString("firstName"),
-                        result.getString("lastName"), result.getString("gender"), result.getString("father"), result.getString("mother"), result.getString("spouse")));
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    action.accept(read(result));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to find relatives for user '" + userName + "' in database");
-        } finally {
-            if (result != null) {
-                try {
-                    result.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads one page of the persons related to a user in id order and passes each one to an action. Pages are found by
+     * id rather than by offset, so reading a page costs the same no matter how far into the list it is.
+     *
+     * @param userName userName of the user to find persons for
+     * @param after    Id the page starts after, or null for the first page
+     * @param limit    Maximum number of persons in the page
+     * @param action   Called with each person in id order
+     * @return Id to pass as after to get the next page, or null if this is the last page
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public String forEachRelative(String userName, String after, int limit, Consumer<Person> action) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("person-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_RELATIVES_PAGE)) {
+            stmt.setString(1, userName);
+            stmt.setString(2, after == null ? "" : after);
+            stmt.setInt(3, limit + 1); // One extra row tells whether there is another page
+            try (ResultSet result = stmt.executeQuery()) {
+                String last = null;
+                for (int count = 0; result.next(); ++count) {
+                    if (count == limit) return last;
+                    Person person = read(result);
+                    action.accept(person);
+                    last = person.getPersonID();
                 }
+                return null;
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to find relatives for user '" + userName + "' in database");
+        }
+    }
 
+    /**
+     * Finds the persons added to a user's tree since a change log version. Only valid if the user's tree hasn't been
+     * reset since then, see {@link ChangeLogDAO#floor(String)}.
+     *
+     * @param userName userName of the user to find persons for
+     * @param since    Last version the client has
+     * @return Persons added after that version, in the order they were added
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public List<Person> findRelativesSince(String userName, long since) throws DAOException {
+        List<Person> list = new ArrayList<>();
+        try (Timing.Stage stage = Timing.stage("person-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND_RELATIVES_SINCE)) {
+            stmt.setString(1, userName);
+            stmt.setLong(2, since);
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    list.add(read(result));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to find relatives for user '" + userName + "' in database");
         }
         return list;
     }
@@ -127,14 +238,45 @@ public class PersonDAO {
      * @param userName userName of the user to delete relatives for
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void deleteRelatives(String userName) throws DAOException {
-        String sql = "DELETE FROM `Persons` WHERE `descendant` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("person-write");
+             PreparedStatement stmt = conn.prepareStatement(DELETE_RELATIVES)) {
             stmt.setString(1, userName);
             stmt.executeUpdate();
+            new ChangeLogDAO(conn).reset(userName);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("ERROR: Unable to delete relatives for user '" + userName + "' from database");
         }
     }
+
+    /**
+     * Logs inserted persons in the change log used by /sync
+     */
+    private void logInserts(List<Person> persons) throws DAOException {
+        new ChangeLogDAO(conn).inserted(ChangeLogDAO.PERSON, persons, Person::getDescendant, Person::getPersonID);
+    }
+
+    /**
+     * Sets the parameters of an insert statement to the fields of a person
+     */
+    private static void bind(PreparedStatement stmt, Person person) throws SQLException {
+        stmt.setString(1, person.getPersonID());
+        stmt.setString(2, person.getDescendant());
+        stmt.setString(3, person.getFirstName());
+        stmt.setString(4, person.getLastName());
+        stmt.setString(5, person.getGender());
+        stmt.setString(6, person.getFather());
+        stmt.setString(7, person.getMother());
+        stmt.setString(8, person.getSpouse());
+    }
+
+    /**
+     * Builds a person from the current row of a result set
+     */
+    private static Person read(ResultSet result) throws SQLException {
+        return new Person(result.getString("person_id"), result.getString("descendant"), result.getString("firstName"),
+                result.getString("lastName"), result.getString("gender"), result.getString("father"), result.getString("mother"), result.getString("spouse"));
+    }
 }
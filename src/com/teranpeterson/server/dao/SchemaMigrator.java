@@ -0,0 +1,141 @@
+package com.teranpeterson.server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the database schema up to date. Each migration is a list of sql statements that moves the schema forward by
+ * one version. The current version is stored in the `schema_version` table so migrations only ever run once.
+ *
+ * @author Teran Peterson
+ * @version v0.1.4
+ */
+public class SchemaMigrator {
+    /**
+     * Forward migrations. Migration i moves the schema from version i to version i + 1. Never edit a migration that has
+     * shipped, add a new one to the end instead.
+     */
+    private static final String[][] MIGRATIONS = {
+            // 1: Initial tables
+            {
+                    "CREATE TABLE IF NOT EXISTS 'Persons' ( `person_id` TEXT NOT NULL UNIQUE, `descendant` TEXT, " +
+                            "`firstName` TEXT NOT NULL, `lastName` TEXT NOT NULL, `gender` TEXT NOT NULL, " +
+                            "`father` TEXT, `mother` TEXT, `spouse` TEXT, PRIMARY KEY(`person_id`) )",
+                    "CREATE TABLE IF NOT EXISTS 'Users' ( `userName` TEXT NOT NULL UNIQUE, `password` TEXT NOT NULL, " +
+                            "`email` TEXT NOT NULL, `firstName` TEXT NOT NULL, `lastName` TEXT NOT NULL, `gender` TEXT NOT NULL CHECK(gender == 'f' OR gender == 'm'), " +
+                            "`person_id` TEXT NOT NULL, PRIMARY KEY(`userName`) )",
+                    "CREATE TABLE IF NOT EXISTS `Events` ( `event_id` TEXT NOT NULL UNIQUE, `descendant` TEXT, " +
+                            "`person_id` TEXT NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL, `country` TEXT NOT NULL, " +
+                            "`city` TEXT NOT NULL, `eventType` TEXT NOT NULL, `year` INTEGER NOT NULL, PRIMARY KEY(`event_id`) )",
+                    "CREATE TABLE IF NOT EXISTS `AuthTokens` ( `token` TEXT NOT NULL UNIQUE, `userName` TEXT NOT NULL, PRIMARY KEY(`token`) )"
+            },
+            // 2: Indexes for looking up a user's persons and events, and a person's events
+            {
+                    "CREATE INDEX IF NOT EXISTS `Persons_descendant` ON `Persons` (`descendant`)",
+                    "CREATE INDEX IF NOT EXISTS `Events_descendant` ON `Events` (`descendant`)",
+                    "CREATE INDEX IF NOT EXISTS `Events_person_id` ON `Events` (`person_id`)"
+            },
+            // 3: Issue and last use times for auth tokens, in milliseconds. Existing tokens count as used now.
+            {
+                    "ALTER TABLE `AuthTokens` ADD COLUMN `issued` INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE `AuthTokens` ADD COLUMN `last_used` INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE `AuthTokens` SET `issued` = CAST(strftime('%s','now') AS INTEGER) * 1000, " +
+                            "`last_used` = CAST(strftime('%s','now') AS INTEGER) * 1000",
+                    "CREATE INDEX IF NOT EXISTS `AuthTokens_last_used` ON `AuthTokens` (`last_used`)"
+            },
+            // 4: Index a user's persons and events by id so pages can be read in id order without sorting
+            {
+                    "DROP INDEX IF EXISTS `Persons_descendant`",
+                    "DROP INDEX IF EXISTS `Events_descendant`",
+                    "CREATE INDEX IF NOT EXISTS `Persons_descendant_id` ON `Persons` (`descendant`, `person_id`)",
+                    "CREATE INDEX IF NOT EXISTS `Events_descendant_id` ON `Events` (`descendant`, `event_id`)"
+            },
+            // 5: Change log for /sync. Starts with a reset so data from before the log sends clients a full snapshot.
+            {
+                    "CREATE TABLE IF NOT EXISTS `Changes` ( `version` INTEGER PRIMARY KEY AUTOINCREMENT, `descendant` TEXT, " +
+                            "`type` TEXT NOT NULL, `record_id` TEXT )",
+                    "CREATE INDEX IF NOT EXISTS `Changes_descendant_type` ON `Changes` (`descendant`, `type`, `version`)",
+                    "INSERT INTO `Changes`(`descendant`,`type`) VALUES (NULL,'reset')"
+            }
+    };
+
+    /**
+     * Tables holding user data. Cleared by /clear and /load, the schema itself is left alone.
+     */
+    static final String[] DATA_TABLES = {"Persons", "Users", "Events", "AuthTokens", "Changes"};
+
+    /**
+     * Gets the schema version this build of the server expects
+     *
+     * @return Latest schema version
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Runs every migration newer than the database's current version. The caller is responsible for committing.
+     *
+     * @param conn Connection to the database
+     * @return Number of migrations that were run
+     * @throws DAOException Problem executing sql statements
+     */
+    public static int migrate(Connection conn) throws DAOException {
+        int version = version(conn);
+        if (version > MIGRATIONS.length) {
+            throw new DAOException("ERROR: Database schema version " + version + " is newer than this server (" + MIGRATIONS.length + ")");
+        }
+
+        int from = version;
+        for (; version < MIGRATIONS.length; ++version) {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : MIGRATIONS[version]) {
+                    stmt.executeUpdate(sql);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                throw new DAOException("ERROR: Unable to migrate database schema to version " + (version + 1));
+            }
+            setVersion(conn, version + 1);
+        }
+        return version - from;
+    }
+
+    /**
+     * Gets the version of the database schema, creating the version table if it doesn't exist
+     *
+     * @param conn Connection to the database
+     * @return Current schema version, 0 for a new database
+     * @throws DAOException Problem executing sql statements
+     */
+    public static int version(Connection conn) throws DAOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `schema_version` ( `version` INTEGER NOT NULL )");
+            try (ResultSet result = stmt.executeQuery("SELECT MAX(`version`) FROM `schema_version`")) {
+                return result.next() ? result.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to read database schema version");
+        }
+    }
+
+    private static void setVersion(Connection conn, int version) throws DAOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM `schema_version`");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to update database schema version");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO `schema_version`(`version`) VALUES (?)")) {
+            stmt.setInt(1, version);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to update database schema version");
+        }
+    }
+}
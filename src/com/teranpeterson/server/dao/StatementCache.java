@@ -0,0 +1,203 @@
+package com.teranpeterson.server.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the prepared statements of a pooled connection open between uses, keyed by their sql, so SQLite doesn't parse
+ * and plan the same sql every time a DAO runs it. The connection is wrapped so DAOs keep calling
+ * {@link Connection#prepareStatement(String)} and closing the statement with try-with-resources. Closing hands the
+ * statement back to the cache with its parameters cleared instead of closing it.
+ * <p>
+ * A statement is only lent out once at a time. If the same sql is prepared again while it is still in use, a new
+ * statement is prepared for the second caller and really closed afterwards. The cache holds a fixed number of
+ * statements and closes the least recently used when it is full. Statements are closed along with the connection.
+ * <p>
+ * The SQLite driver keeps the parameters of a batch in the same buffer it binds single executions from, and clearing the
+ * batch doesn't shrink it, so a statement that ran a batch can't safely be reused. Those are closed when given back.
+ * Batches prepare their statement once for many rows anyway, so little is lost.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+class StatementCache implements InvocationHandler {
+    /**
+     * Default maximum number of statements kept per connection. The DAOs run fewer distinct sql strings than this.
+     */
+    static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final Method PREPARE;
+    private static final Method CLOSE;
+
+    static {
+        try {
+            PREPARE = Connection.class.getMethod("prepareStatement", String.class);
+            CLOSE = Connection.class.getMethod("close");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Connection conn;
+    private final int maxSize;
+    private final Map<String, Cached> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Metrics, shared by every connection of a pool
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    private StatementCache(Connection conn, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Wraps a connection so its prepared statements are cached
+     *
+     * @param conn    Connection to wrap
+     * @param maxSize Maximum number of statements to keep open
+     * @param hits    Counter of statements reused from the cache
+     * @param misses  Counter of statements that had to be prepared
+     * @return Connection with cached statements
+     */
+    static Connection wrap(Connection conn, int maxSize, AtomicLong hits, AtomicLong misses) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new StatementCache(conn, maxSize, hits, misses));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.equals(PREPARE)) return prepare((String) args[0]);
+        if (method.equals(CLOSE)) closeAll();
+        if (method.getName().equals("equals") && method.getParameterCount() == 1) return proxy == args[0];
+        return call(conn, method, args);
+    }
+
+    /**
+     * Lends out the cached statement for the sql, preparing it if it isn't cached or is already in use
+     */
+    private synchronized PreparedStatement prepare(String sql) throws SQLException {
+        Cached cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        if (cached != null) return stmt; // The cached one is busy, this one is closed as usual
+
+        cached = new Cached(sql, stmt);
+        cached.inUse = true;
+        statements.put(sql, cached);
+
+        // Close least recently used statements that aren't lent out until the cache fits
+        Iterator<Cached> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            Cached oldest = it.next();
+            if (oldest.inUse) continue;
+            it.remove();
+            close(oldest.stmt);
+        }
+        return cached.proxy;
+    }
+
+    /**
+     * Closes every cached statement. Called when the connection is closed.
+     */
+    private synchronized void closeAll() {
+        for (Cached cached : statements.values()) {
+            close(cached.stmt);
+        }
+        statements.clear();
+    }
+
+    /**
+     * Hands a statement back to the cache once its caller closes it
+     */
+    private synchronized void giveBack(Cached cached) throws SQLException {
+        if (!cached.inUse) return;
+        cached.inUse = false;
+        if (cached.batched) {
+            statements.remove(cached.sql);
+            close(cached.stmt);
+            return;
+        }
+        try {
+            cached.stmt.clearParameters();
+        } catch (SQLException e) {
+            // A statement that can't be reset isn't safe to lend out again
+            statements.remove(cached.sql);
+            close(cached.stmt);
+            throw e;
+        }
+        if (statements.get(cached.sql) != cached) close(cached.stmt); // Evicted while it was lent out
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void close(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Cached statement and the wrapper lent out for it. Closing the wrapper gives the statement back, and the wrapper
+     * reports itself closed until it is lent out again.
+     */
+    private class Cached implements InvocationHandler {
+        final String sql;
+        final PreparedStatement stmt;
+        final PreparedStatement proxy;
+        boolean inUse;
+        boolean batched;
+
+        Cached(String sql, PreparedStatement stmt) {
+            this.sql = sql;
+            this.stmt = stmt;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    giveBack(this);
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "addBatch":
+                    batched = true;
+                    return call(stmt, method, args);
+                case "isClosed": // Not implemented by the driver
+                    synchronized (StatementCache.this) {
+                        return !inUse;
+                    }
+                default:
+                    return call(stmt, method, args);
+            }
+        }
+    }
+}
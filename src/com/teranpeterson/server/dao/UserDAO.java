@@ -1,19 +1,34 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.model.User;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Controller used to connect to and modify users in the database
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.7
  */
 public class UserDAO {
+    /**
+     * Adds a user
+     */
+    static final String INSERT = "INSERT INTO `Users`(`userName`,`password`,`email`,`firstName`,`lastname`,`gender`,`person_id`) VALUES (?,?,?,?,?,?,?)";
+    /**
+     * Finds a user by user name
+     */
+    static final String FIND = "SELECT * FROM `Users` WHERE `userName` = ?";
+    /**
+     * Finds a user by user name and password
+     */
+    static final String AUTHENTICATE = "SELECT * FROM `Users` WHERE `userName` = ? AND `password` = ?";
+
     /**
      * Connection to database
      */
@@ -32,17 +47,11 @@ public class UserDAO {
      * @param user User to add to the database
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public void insert(User user) throws DAOException {
-        String sql = "INSERT INTO `Users`(`userName`,`password`,`email`,`firstName`,`lastname`,`gender`,`person_id`) VALUES (?,?,?,?,?,?,?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, user.getUserName());
-            stmt.setString(2, user.getPassword());
-            stmt.setString(3, user.getEmail());
-            stmt.setString(4, user.getFirstName());
-            stmt.setString(5, user.getLastName());
-            stmt.setString(6, user.getGender());
-            stmt.setString(7, user.getPersonID());
-
+        try (Timing.Stage stage = Timing.stage("user-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            bind(stmt, user);
             stmt.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -50,6 +59,27 @@ public class UserDAO {
         }
     }
 
+    /**
+     * Adds a list of users to the database in a single batch. The caller commits them together.
+     *
+     * @param users Users to add to the database
+     * @throws DAOException Problem executing sql statements
+     */
+    @SuppressWarnings("try")
+    public void insertAll(List<User> users) throws DAOException {
+        try (Timing.Stage stage = Timing.stage("user-write");
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            for (User user : users) {
+                bind(stmt, user);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR: Unable to insert " + users.size() + " users into database");
+        }
+    }
+
     /**
      * Find a user in the database
      *
@@ -57,11 +87,12 @@ public class UserDAO {
      * @return If the user is found, return it, otherwise null
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public User find(String userName) throws DAOException {
         ResultSet result = null;
 
-        String sql = "SELECT * FROM `Users` WHERE `userName` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("user-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND)) {
             stmt.setString(1, userName);
             result = stmt.executeQuery();
             if (result.next()) {
@@ -92,11 +123,12 @@ public class UserDAO {
      * @return True if the login credentials match, otherwise false
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public User authenticate(String userName, String password) throws DAOException {
         ResultSet result = null;
 
-        String sql = "SELECT * FROM `Users` WHERE `userName` = ? AND `password` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("user-read");
+             PreparedStatement stmt = conn.prepareStatement(AUTHENTICATE)) {
             stmt.setString(1, userName);
             stmt.setString(2, password);
 
@@ -128,11 +160,12 @@ public class UserDAO {
      * @return True if the login credentials match, otherwise false
      * @throws DAOException Problem executing sql statements
      */
+    @SuppressWarnings("try")
     public boolean check(String userName) throws DAOException {
         ResultSet result = null;
 
-        String sql = "SELECT * FROM `Users` WHERE `userName` = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timing.Stage stage = Timing.stage("user-read");
+             PreparedStatement stmt = conn.prepareStatement(FIND)) {
             stmt.setString(1, userName);
 
             result = stmt.executeQuery();
@@ -154,4 +187,17 @@ public class UserDAO {
         }
         return true;
     }
+
+    /**
+     * Sets the parameters of an insert statement to the fields of a user
+     */
+    private static void bind(PreparedStatement stmt, User user) throws SQLException {
+        stmt.setString(1, user.getUserName());
+        stmt.setString(2, user.getPassword());
+        stmt.setString(3, user.getEmail());
+        stmt.setString(4, user.getFirstName());
+        stmt.setString(5, user.getLastName());
+        stmt.setString(6, user.getGender());
+        stmt.setString(7, user.getPersonID());
+    }
 }
@@ -0,0 +1,311 @@
+package com.teranpeterson.server.handler;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses response bodies for clients that send Accept-Encoding: gzip or deflate. Handlers are wrapped so they keep
+ * writing plain json and don't need to know about compression. Bodies smaller than the threshold are sent as is, since
+ * compressing them saves little and costs a deflater. When the handler doesn't give a length up front, the first
+ * threshold bytes are held back until it is known which kind of body it is.
+ * <p>
+ * Compressed responses are sent chunked with Vary: Accept-Encoding, and any ETag is made weak because the compressed
+ * bytes aren't the ones the tag was made for. Responses the handler already set a Content-Encoding on are left alone.
+ *
+ * @author Teran Peterson
+ * @version v0.1.2
+ */
+public class Compression {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int level;
+    private final int threshold;
+
+    // Metrics
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * Creates a compression layer
+     *
+     * @param level     Deflater level from 1 (fastest) to 9 (smallest), 0 turns compression off
+     * @param threshold Smallest body in bytes worth compressing
+     */
+    public Compression(int level, int threshold) {
+        if (level < 0 || level > 9) throw new IllegalArgumentException("Compression level must be between 0 and 9");
+        if (threshold < 0) throw new IllegalArgumentException("Compression threshold can't be negative");
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Wraps a handler so its responses are compressed when the client accepts it
+     *
+     * @param handler Handler writing uncompressed responses
+     * @return Handler that compresses them
+     */
+    public HttpHandler wrap(HttpHandler handler) {
+        if (level == 0) return handler;
+        return exchange -> {
+            String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (encoding == null) handler.handle(exchange);
+            else handler.handle(new Encoded(exchange, encoding));
+        };
+    }
+
+    /**
+     * Picks the encoding to use from an Accept-Encoding header, preferring gzip
+     *
+     * @param header Accept-Encoding header, may be null
+     * @return gzip, deflate or null if the client accepts neither
+     */
+    static String negotiate(String header) {
+        if (header == null) return null;
+        boolean deflate = false;
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim().toLowerCase();
+            if (quality(params) <= 0) continue;
+            if (name.equals("gzip") || name.equals("x-gzip") || name.equals("*")) return "gzip";
+            if (name.equals("deflate")) deflate = true;
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    /**
+     * Reads the q parameter of an Accept-Encoding entry
+     */
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; ++i) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Gets the deflater level in use
+     *
+     * @return Level from 0 to 9
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the number of responses that were compressed
+     *
+     * @return Compressed response count
+     */
+    public long getCompressed() {
+        return compressed.get();
+    }
+
+    /**
+     * Gets the number of bytes handlers wrote to compressed responses
+     *
+     * @return Bytes before compression
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * Gets the number of bytes sent for compressed responses
+     *
+     * @return Bytes after compression
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * Gets the number of bytes compression kept off the network
+     *
+     * @return Bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesIn.get() - bytesOut.get();
+    }
+
+    /**
+     * Exchange whose response body is compressed. Everything except sending the body is passed straight through.
+     */
+    private class Encoded extends ForwardingExchange {
+        private final String encoding;
+        private OutputStream body;
+        private int code = -1;
+
+        Encoded(HttpExchange exchange, String encoding) {
+            super(exchange);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            List<String> vary = headers.get("Vary");
+            if (vary == null || !vary.contains("Accept-Encoding")) headers.add("Vary", "Accept-Encoding");
+            boolean empty = responseLength < 0 || rCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                    || rCode == HttpURLConnection.HTTP_NO_CONTENT;
+            boolean encoded = headers.containsKey("Content-Encoding"); // Already compressed by the handler
+            if (empty || encoded || (responseLength > 0 && responseLength < threshold)) {
+                exchange.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+
+            code = rCode;
+            Body body = new Body();
+            if (responseLength > 0) body.start(true);
+            this.body = body;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return body != null ? body : exchange.getResponseBody();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return code != -1 ? code : exchange.getResponseCode();
+        }
+
+        @Override
+        public void close() {
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            exchange.close();
+        }
+
+        /**
+         * Response body that holds back the first threshold bytes, then either compresses the whole body or sends it
+         * as is with its length
+         */
+        private class Body extends OutputStream {
+            private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            private OutputStream out;
+            private Counter counter;
+            private Deflater deflater;
+            private long in;
+            private boolean closed;
+
+            /**
+             * Sends the headers and any bytes held back
+             *
+             * @param compress Whether to compress the body
+             */
+            void start(boolean compress) throws IOException {
+                if (compress) {
+                    Headers headers = exchange.getResponseHeaders();
+                    headers.set("Content-Encoding", encoding);
+                    String etag = headers.getFirst("ETag");
+                    if (etag != null && !etag.startsWith("W/")) headers.set("ETag", "W/" + etag);
+                    exchange.sendResponseHeaders(code, 0);
+
+                    counter = new Counter(exchange.getResponseBody());
+                    if (encoding.equals("gzip")) {
+                        out = new GZIPOutputStream(counter, BUFFER_SIZE) {
+                            {
+                                def.setLevel(level);
+                            }
+                        };
+                    } else {
+                        deflater = new Deflater(level);
+                        out = new DeflaterOutputStream(counter, deflater, BUFFER_SIZE);
+                    }
+                } else {
+                    int length = pending.size();
+                    exchange.sendResponseHeaders(code, length == 0 ? -1 : length);
+                    out = exchange.getResponseBody();
+                }
+                pending.writeTo(out);
+                pending = null;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                in += len;
+                if (out != null) {
+                    out.write(b, off, len);
+                    return;
+                }
+                pending.write(b, off, len);
+                if (pending.size() >= threshold) start(true);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (out != null) out.flush(); // Held back bytes wait until it's known whether to compress
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                if (out == null) start(false);
+                try {
+                    out.close();
+                } finally {
+                    if (deflater != null) deflater.end();
+                }
+                if (counter != null) {
+                    compressed.incrementAndGet();
+                    bytesIn.addAndGet(in);
+                    bytesOut.addAndGet(counter.count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written through it
+     */
+    private static class Counter extends FilterOutputStream {
+        long count;
+
+        Counter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
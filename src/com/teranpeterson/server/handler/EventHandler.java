@@ -2,26 +2,29 @@ package com.teranpeterson.server.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.cache.ResponseCache;
 import com.teranpeterson.server.helpers.Serializer;
+import com.teranpeterson.server.model.Event;
 import com.teranpeterson.server.request.EventRequest;
 import com.teranpeterson.server.result.EventResult;
 import com.teranpeterson.server.service.EventService;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.util.Map;
 
 /**
- * Handler for Event(s) Requests. URL: /event/{eventID} or /event
+ * Handler for Event(s) Requests. URL: /event/{eventID} or /event?limit={page size}&after={cursor}
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.6
  */
 public class EventHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
             // Split URL request to find eventID
-            String url = exchange.getRequestURI().toString().substring(6);
+            String url = exchange.getRequestURI().getPath().substring(6);
             String token = exchange.getRequestHeaders().getFirst("Authorization");
             String[] params = url.split("/");
 
@@ -30,22 +33,42 @@ public class EventHandler implements HttpHandler {
             EventRequest request = null;
             if (params.length == 0 || params.length == 1) {
                 request = new EventRequest(token);
+
+                // Optional paging, eg. ?limit=100&after={next cursor from the previous page}
+                Map<String, String> query = Query.parse(exchange.getRequestURI().getRawQuery());
+                request.setAfter(query.get("after"));
+                if (query.containsKey("limit")) {
+                    try {
+                        request.setLimit(Integer.parseInt(query.get("limit")));
+                        success = request.getLimit() > 0;
+                    } catch (NumberFormatException e) {
+                        success = false;
+                    }
+                }
             } else if (params.length == 2) {
                 request = new EventRequest(params[1], token);
             } else {
                 success = false;
             }
 
-            // Run service and get result
+            // Run service and get result. Lists are streamed to the client as they are read, or sent from the cache.
             EventResult result;
-            if (success) result = new EventService().event(request);
-            else result = new EventResult("ERROR: Invalid parameters");
+            ListResponse<Event> list = new ListResponse<>(exchange, Event.class, ResponseCache.getInstance().getMaxEntryBytes());
+            if (!success) result = new EventResult("ERROR: Invalid parameters");
+            else if (request.getEventID() == null) result = new EventService().events(request, list);
+            else result = new EventService().event(request);
+
+            // The list has already been sent, or the connection failed partway through
+            if (list.isStarted()) {
+                exchange.close();
+                return;
+            }
 
             // Build response
             String response;
             if (result.isSuccess()) {
+                response = Serializer.serialize(result); // Before the headers, so it shows in Server-Timing
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                response = Serializer.serialize(result);
             } else {
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, 0);
                 response = "{\"message\" : \"" + result.getMessage() + "\"}";
@@ -0,0 +1,180 @@
+package com.teranpeterson.server.handler;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.teranpeterson.server.helpers.Json;
+import com.teranpeterson.server.service.ListSink;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a list result straight to the response body as each record is read, in the same format as a serialized
+ * PersonResult or EventResult: {"data":[...],"next":"...","success":true}, where next is only there for pages with
+ * more after them. The response is sent chunked, only one buffer's worth of json is held in memory at a time, plus a
+ * copy of the json sent if the response is small enough to cache. Lists are tagged with an ETag, and a client sending a
+ * matching If-None-Match gets 304 Not Modified with no body.
+ *
+ * @author Teran Peterson
+ * @version v0.1.5
+ */
+class ListResponse<T> implements ListSink<T> {
+    /**
+     * Characters of json buffered before they are sent to the client
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final HttpExchange exchange;
+    private final Class<T> type;
+    private final long recordLimit;
+    private JsonWriter writer;
+    private Recorder recorder;
+    private boolean started;
+    private String next;
+    private String etag;
+
+    /**
+     * Creates a list response for an exchange
+     *
+     * @param exchange    Exchange to respond to
+     * @param type        Type of record in the list
+     * @param recordLimit Largest response to keep a copy of, 0 to keep none
+     */
+    ListResponse(HttpExchange exchange, Class<T> type, long recordLimit) {
+        this.exchange = exchange;
+        this.type = type;
+        this.recordLimit = recordLimit;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        started = true;
+        tag();
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        OutputStream body = exchange.getResponseBody();
+        if (recordLimit > 0) body = recorder = new Recorder(body, recordLimit);
+        writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_SIZE));
+        writer.beginObject();
+        writer.name("data");
+        writer.beginArray();
+    }
+
+    @Override
+    public void write(T record) throws IOException {
+        Json.GSON.toJson(record, type, writer);
+    }
+
+    @Override
+    public void next(String cursor) {
+        next = cursor;
+    }
+
+    @Override
+    public void end() throws IOException {
+        writer.endArray();
+        if (next != null) writer.name("next").value(next);
+        writer.name("success").value(true);
+        writer.endObject();
+        writer.close();
+    }
+
+    @Override
+    public boolean unchanged(String etag) throws IOException {
+        this.etag = etag;
+        String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (match == null || !matches(match, etag)) return false;
+
+        started = true;
+        tag();
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+        exchange.close();
+        return true;
+    }
+
+    /**
+     * Adds the list's ETag to the response, if it has one. Only lists that are sent, or not modified, are tagged, so an
+     * error response never carries the tag of the list it failed to send.
+     */
+    private void tag() {
+        if (etag != null) exchange.getResponseHeaders().set("ETag", etag);
+    }
+
+    /**
+     * Checks an If-None-Match header against a tag. The header may list several tags or be *, and weak tags match
+     * their strong form.
+     */
+    static boolean matches(String header, String etag) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replay(byte[] json) throws IOException {
+        started = true;
+        tag();
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, json.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(json);
+        body.close();
+        return true;
+    }
+
+    @Override
+    public byte[] recorded() {
+        return recorder == null ? null : recorder.copy();
+    }
+
+    /**
+     * Checks whether the response has been started. Once it has, the status code has been sent and can't be changed.
+     *
+     * @return True if {@link #begin()} or {@link #replay(byte[])} was called
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Passes bytes through to the response body and keeps a copy of them, until there are too many to keep
+     */
+    private static class Recorder extends FilterOutputStream {
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Recorder(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            keep(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            keep(b, off, len);
+        }
+
+        private void keep(byte[] b, int off, int len) {
+            if (copy == null) return;
+            if (copy.size() + len > limit) copy = null;
+            else copy.write(b, off, len);
+        }
+
+        byte[] copy() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
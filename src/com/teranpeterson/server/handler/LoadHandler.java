@@ -2,27 +2,26 @@ package com.teranpeterson.server.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import com.teranpeterson.server.helpers.Deserializer;
-import com.teranpeterson.server.request.LoadRequest;
 import com.teranpeterson.server.result.LoadResult;
 import com.teranpeterson.server.service.LoadService;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Handler for Load Requests. URL: /load
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.3
  */
 public class LoadHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
-            Reader reader = new InputStreamReader(exchange.getRequestBody());
-            LoadRequest request = Deserializer.loadRequest(reader);
-            LoadResult result = new LoadService().load(request);
+            // Records are inserted as they are read instead of building the whole request first
+            Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            LoadResult result = new LoadService().load(reader);
 
             if (result.isSuccess()) {
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
@@ -15,7 +15,7 @@ import java.net.HttpURLConnection;
  * Handler for Login Requests. URL: /user/login
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.3
  */
 public class LoginHandler implements HttpHandler {
     @Override
@@ -27,8 +27,8 @@ public class LoginHandler implements HttpHandler {
 
             String response;
             if (result.isSuccess()) {
+                response = Serializer.serialize(result); // Before the headers, so it shows in Server-Timing
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                response = Serializer.serialize(result);
             } else {
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, 0);
                 response = "{\"message\" : \"" + result.getMessage() + "\"}";
@@ -0,0 +1,47 @@
+package com.teranpeterson.server.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Handler for Metrics Requests. Writes every registered metric in the Prometheus text format. URL: /metrics
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class MetricsHandler implements HttpHandler {
+    private final Metrics metrics;
+
+    /**
+     * Creates a handler exporting the given registry
+     *
+     * @param metrics Metrics to export
+     */
+    public MetricsHandler(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] response = metrics.export().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", Metrics.CONTENT_TYPE);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, response.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(response);
+        body.close();
+    }
+}
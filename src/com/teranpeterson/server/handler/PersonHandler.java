@@ -2,26 +2,29 @@ package com.teranpeterson.server.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.cache.ResponseCache;
 import com.teranpeterson.server.helpers.Serializer;
+import com.teranpeterson.server.model.Person;
 import com.teranpeterson.server.request.PersonRequest;
 import com.teranpeterson.server.result.PersonResult;
 import com.teranpeterson.server.service.PersonService;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.util.Map;
 
 /**
- * Handler for Person(s) Requests. URL: /person/{personID} or /person
+ * Handler for Person(s) Requests. URL: /person/{personID} or /person?limit={page size}&after={cursor}
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.6
  */
 public class PersonHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
             // Split URL request to find personID
-            String url = exchange.getRequestURI().toString().substring(7);
+            String url = exchange.getRequestURI().getPath().substring(7);
             String token = exchange.getRequestHeaders().getFirst("Authorization");
             String[] params = url.split("/");
 
@@ -30,22 +33,42 @@ public class PersonHandler implements HttpHandler {
             PersonRequest request = null;
             if (params.length == 0 || params.length == 1) {
                 request = new PersonRequest(token);
+
+                // Optional paging, eg. ?limit=100&after={next cursor from the previous page}
+                Map<String, String> query = Query.parse(exchange.getRequestURI().getRawQuery());
+                request.setAfter(query.get("after"));
+                if (query.containsKey("limit")) {
+                    try {
+                        request.setLimit(Integer.parseInt(query.get("limit")));
+                        success = request.getLimit() > 0;
+                    } catch (NumberFormatException e) {
+                        success = false;
+                    }
+                }
             } else if (params.length == 2) {
                 request = new PersonRequest(params[1], token);
             } else {
                 success = false;
             }
 
-            // Run service and get result
+            // Run service and get result. Lists are streamed to the client as they are read, or sent from the cache.
             PersonResult result;
-            if (success) result = new PersonService().person(request);
-            else result = new PersonResult("ERROR: Invalid parameters");
+            ListResponse<Person> list = new ListResponse<>(exchange, Person.class, ResponseCache.getInstance().getMaxEntryBytes());
+            if (!success) result = new PersonResult("ERROR: Invalid parameters");
+            else if (request.getPersonID() == null) result = new PersonService().relatives(request, list);
+            else result = new PersonService().person(request);
+
+            // The list has already been sent, or the connection failed partway through
+            if (list.isStarted()) {
+                exchange.close();
+                return;
+            }
 
             // Build response
             String response;
             if (result.isSuccess()) {
+                response = Serializer.serialize(result); // Before the headers, so it shows in Server-Timing
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                response = Serializer.serialize(result);
             } else {
                 exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, 0);
                 response = "{\"message\" : \"" + result.getMessage() + "\"}";
@@ -0,0 +1,45 @@
+package com.teranpeterson.server.handler;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the parameters of a url's query string
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+class Query {
+    private Query() {
+
+    }
+
+    /**
+     * Splits a raw query string into its parameters. Names and values are url decoded, and when a name appears more than
+     * once the first value wins.
+     *
+     * @param query Raw query string from the request uri, may be null
+     * @return Parameters by name
+     */
+    static Map<String, String> parse(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) return params;
+        for (String pair : query.split("&")) {
+            int split = pair.indexOf('=');
+            String name = decode(split < 0 ? pair : pair.substring(0, split));
+            String value = split < 0 ? "" : decode(pair.substring(split + 1));
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return s;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.teranpeterson.server.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.metrics.Histogram;
+import com.teranpeterson.server.metrics.Metrics;
+import com.teranpeterson.server.metrics.Timing;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times the stages of each request while {@link Timing} is switched on. The stages finished before the response
+ * headers go out are sent in a Server-Timing header, which browser developer tools show next to the request. Every
+ * stage, including ones after the headers such as streaming a list, is recorded in a histogram for its endpoint.
+ * <p>
+ * Wrap outside compression, which can hold the headers back until it has seen the start of the body.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class ServerTiming {
+    private final Metrics metrics;
+
+    /**
+     * Creates a timing layer recording into a registry
+     *
+     * @param metrics Registry for the stage histograms
+     */
+    public ServerTiming(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps a handler so its requests are timed while timing is on
+     *
+     * @param path    Context path the handler is registered at, used as the path label
+     * @param handler Handler for the endpoint
+     * @return Handler that times requests
+     */
+    public HttpHandler wrap(String path, HttpHandler handler) {
+        ConcurrentMap<String, Histogram> stages = new ConcurrentHashMap<>();
+        return exchange -> {
+            Timing timing = Timing.begin();
+            if (timing == null) {
+                handler.handle(exchange);
+                return;
+            }
+            try {
+                handler.handle(new Timed(exchange, timing));
+            } finally {
+                timing.end();
+                for (int i = 0; i < timing.getSize(); ++i) {
+                    Histogram histogram = stages.get(timing.getName(i));
+                    if (histogram == null) {
+                        histogram = stages.computeIfAbsent(timing.getName(i), stage -> metrics.histogram(
+                                "familymap_stage_duration_seconds", "Time spent in each stage of a request",
+                                Histogram.LATENCY_BOUNDS, "path", path, "stage", stage));
+                    }
+                    histogram.observeNanos(timing.getNanos(i));
+                }
+            }
+        };
+    }
+
+    /**
+     * Exchange that adds the Server-Timing header when the response headers are sent
+     */
+    private static class Timed extends ForwardingExchange {
+        private final Timing timing;
+
+        Timed(HttpExchange exchange, Timing timing) {
+            super(exchange);
+            this.timing = timing;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            exchange.getResponseHeaders().set("Server-Timing", timing.header());
+            exchange.sendResponseHeaders(rCode, responseLength);
+        }
+    }
+}
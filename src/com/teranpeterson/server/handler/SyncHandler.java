@@ -0,0 +1,63 @@
+package com.teranpeterson.server.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.helpers.Serializer;
+import com.teranpeterson.server.request.SyncRequest;
+import com.teranpeterson.server.result.SyncResult;
+import com.teranpeterson.server.service.SyncService;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Handler for Sync Requests. URL: /sync?since={version from the last sync}
+ *
+ * @author Teran Peterson
+ * @version v0.1.1
+ */
+public class SyncHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String token = exchange.getRequestHeaders().getFirst("Authorization");
+            Map<String, String> query = Query.parse(exchange.getRequestURI().getRawQuery());
+
+            // Run service and get result. Without a version the client gets a snapshot.
+            SyncResult result;
+            try {
+                Long since = query.containsKey("since") ? Long.valueOf(query.get("since")) : null;
+                result = new SyncService().sync(new SyncRequest(token, since));
+            } catch (NumberFormatException e) {
+                result = new SyncResult("ERROR: Invalid parameters");
+            }
+
+            // Build response
+            String response;
+            if (result.isSuccess()) {
+                response = Serializer.serialize(result); // Before the headers, so it shows in Server-Timing
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+            } else {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, 0);
+                response = "{\"message\" : \"" + result.getMessage() + "\"}";
+            }
+
+            OutputStream body = exchange.getResponseBody();
+            OutputStreamWriter writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+            writer.write(response);
+            writer.flush();
+            body.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, 0);
+            String response = "{\"message\" : \"ERROR: Internal server error\"}";
+            OutputStream body = exchange.getResponseBody();
+            OutputStreamWriter writer = new OutputStreamWriter(body);
+            writer.write(response);
+            writer.flush();
+            body.close();
+        }
+    }
+}
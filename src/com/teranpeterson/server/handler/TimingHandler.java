@@ -0,0 +1,64 @@
+package com.teranpeterson.server.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.metrics.Timing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Handler for switching request stage timing on and off while the server runs. GET reports whether timing is on,
+ * POST with ?enabled=true or ?enabled=false changes it, if the server was started with timing-toggle. URL: /timing
+ *
+ * @author Teran Peterson
+ * @version v0.1.1
+ */
+public class TimingHandler implements HttpHandler {
+    private final boolean toggle;
+
+    /**
+     * Creates a timing handler
+     *
+     * @param toggle True to let POST requests switch timing on and off
+     */
+    public TimingHandler(boolean toggle) {
+        this.toggle = toggle;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        int code = HttpURLConnection.HTTP_OK;
+        String response;
+        if (method.equalsIgnoreCase("POST") && !toggle) {
+            code = HttpURLConnection.HTTP_FORBIDDEN;
+            response = "{\"message\" : \"ERROR: Timing can't be changed while the server runs\"}";
+        } else if (method.equalsIgnoreCase("POST")) {
+            String enabled = Query.parse(exchange.getRequestURI().getRawQuery()).get("enabled");
+            if ("true".equalsIgnoreCase(enabled) || "false".equalsIgnoreCase(enabled)) {
+                Timing.setEnabled(Boolean.parseBoolean(enabled));
+                response = "{\"message\" : \"Timing " + (Timing.isEnabled() ? "enabled" : "disabled") + "\"}";
+            } else {
+                code = HttpURLConnection.HTTP_BAD_REQUEST;
+                response = "{\"message\" : \"ERROR: Invalid parameters\"}";
+            }
+        } else if (method.equalsIgnoreCase("GET")) {
+            response = "{\"enabled\" : " + Timing.isEnabled() + "}";
+        } else {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(bytes);
+        body.close();
+    }
+}
@@ -1,32 +1,122 @@
 package com.teranpeterson.server.handler;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.teranpeterson.server.cache.AssetCache;
+import com.teranpeterson.server.cache.AssetCache.Asset;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /**
- * Handler for the web interface
+ * Handler for the web interface. Files are served from an {@link AssetCache} loaded at startup, gzipped when the client
+ * accepts it, and revalidated with ETag and Last-Modified.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.3
  */
 public class WebUIHandler implements HttpHandler {
+    /**
+     * Seconds browsers may reuse a file other than a page before checking for a new one. Pages are always checked so
+     * a new version of the interface is picked up right away.
+     */
+    private static final int MAX_AGE = 3600;
+    private static final String NOT_FOUND = "/HTML/404.html";
+
+    private final AssetCache assets;
+
+    /**
+     * Creates a handler serving the given files
+     *
+     * @param assets Files of the web interface
+     */
+    public WebUIHandler(AssetCache assets) {
+        this.assets = assets;
+    }
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        String url = exchange.getRequestURI().toString();
+        Headers headers = exchange.getResponseHeaders();
+        String method = exchange.getRequestMethod();
+        boolean head = method.equalsIgnoreCase("HEAD");
+        if (!head && !method.equalsIgnoreCase("GET")) {
+            headers.set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+            exchange.close();
+            return;
+        }
 
-        // Redirect user to index.html or requested url
-        if (url.length() == 1) {
-            url = "resources/web/index.html";
+        // Send the 404 page for anything that isn't a file of the interface, including paths outside of it
+        int code = HttpURLConnection.HTTP_OK;
+        Asset asset = assets.get(exchange.getRequestURI().getPath());
+        if (asset == null) {
+            code = HttpURLConnection.HTTP_NOT_FOUND;
+            asset = assets.get(NOT_FOUND);
+            if (asset == null) {
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+                return;
+            }
         }
-        else {
-            url = "resources/web" + url;
+
+        headers.set("Content-Type", asset.getType());
+        boolean page = asset.getType().startsWith("text/html");
+        headers.set("Cache-Control", code != HttpURLConnection.HTTP_OK ? "no-store"
+                : page ? "no-cache" : "public, max-age=" + MAX_AGE);
+        byte[] content = asset.getContent();
+        if (asset.getGzipped() != null) {
+            headers.set("Vary", "Accept-Encoding");
+            if ("gzip".equals(Compression.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding")))) {
+                headers.set("Content-Encoding", "gzip");
+                content = asset.getGzipped();
+            }
         }
 
-        exchange.sendResponseHeaders(200, 0);
-        Files.copy(Paths.get(url), exchange.getResponseBody());
-        exchange.getResponseBody().close();
+        if (code == HttpURLConnection.HTTP_OK) {
+            boolean gzipped = content != asset.getContent();
+            headers.set("ETag", gzipped ? "W/" + asset.getEtag() : asset.getEtag());
+            headers.set("Last-Modified", asset.getLastModifiedDate());
+            if (unchanged(exchange, asset)) {
+                headers.remove("Content-Encoding");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        if (head) {
+            headers.set("Content-Length", Integer.toString(content.length));
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(code, content.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(content);
+        body.close();
+    }
+
+    /**
+     * Checks whether the client already has the current file. If-Modified-Since is only used when there is no
+     * If-None-Match, since the ETag is the more precise of the two.
+     */
+    private static boolean unchanged(HttpExchange exchange, Asset asset) {
+        Headers request = exchange.getRequestHeaders();
+        String match = request.getFirst("If-None-Match");
+        if (match != null) return ListResponse.matches(match, asset.getEtag());
+
+        String since = request.getFirst("If-Modified-Since");
+        if (since == null) return false;
+        try {
+            long time = ZonedDateTime.parse(since, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return asset.getLastModified() <= time;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
     }
 }
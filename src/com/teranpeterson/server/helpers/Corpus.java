@@ -0,0 +1,146 @@
+package com.teranpeterson.server.helpers;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Names and locations used by the {@link Generator} to create random ancestors. The json files are read once, the first
+ * time a corpus is needed, and shared by every generator after that. The lists can't be modified.
+ *
+ * @author Teran Peterson
+ * @version v0.1.1
+ */
+public class Corpus {
+    /**
+     * Folder containing the json files
+     */
+    static final String DIRECTORY = "resources/json";
+
+    private static volatile Corpus instance;
+
+    private final List<String> male;
+    private final List<String> female;
+    private final List<String> surnames;
+    private final List<Location> locations;
+
+    private Corpus(List<String> male, List<String> female, List<String> surnames, List<Location> locations) {
+        this.male = Collections.unmodifiableList(new ArrayList<>(male));
+        this.female = Collections.unmodifiableList(new ArrayList<>(female));
+        this.surnames = Collections.unmodifiableList(new ArrayList<>(surnames));
+        this.locations = Collections.unmodifiableList(new ArrayList<>(locations));
+    }
+
+    /**
+     * Gets the shared corpus, loading it on first use
+     *
+     * @return Shared corpus
+     * @throws IllegalStateException Unable to read the json files
+     */
+    public static Corpus get() {
+        Corpus corpus = instance;
+        if (corpus == null) {
+            synchronized (Corpus.class) {
+                corpus = instance;
+                if (corpus == null) {
+                    corpus = load(DIRECTORY);
+                    instance = corpus;
+                }
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Reads the json files again and replaces the shared corpus. Generators already running keep the corpus they started
+     * with.
+     *
+     * @throws IllegalStateException Unable to read the json files, the old corpus is kept
+     */
+    public static synchronized void reload() {
+        instance = load(DIRECTORY);
+    }
+
+    /**
+     * Reads a corpus from the json files in a folder
+     *
+     * @param directory Folder containing mnames.json, fnames.json, snames.json and locations.json
+     * @return Corpus read from the files
+     * @throws IllegalStateException Unable to read one of the files
+     */
+    static Corpus load(String directory) {
+        Gson gson = Json.GSON;
+        return new Corpus(read(gson, directory, "mnames.json", Names.class).data,
+                read(gson, directory, "fnames.json", Names.class).data,
+                read(gson, directory, "snames.json", Names.class).data,
+                read(gson, directory, "locations.json", Locations.class).data);
+    }
+
+    private static <T> T read(Gson gson, String directory, String file, Class<T> type) {
+        try (Reader reader = Files.newBufferedReader(Paths.get(directory, file), StandardCharsets.UTF_8)) {
+            T result = gson.fromJson(reader, type);
+            if (result == null) throw new IllegalStateException("ERROR: " + file + " is empty");
+            return result;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("ERROR: Unable to read " + file);
+        }
+    }
+
+    /**
+     * Gets the list of male first names
+     *
+     * @return Male first names
+     */
+    public List<String> getMale() {
+        return male;
+    }
+
+    /**
+     * Gets the list of female first names
+     *
+     * @return Female first names
+     */
+    public List<String> getFemale() {
+        return female;
+    }
+
+    /**
+     * Gets the list of surnames
+     *
+     * @return Surnames
+     */
+    public List<String> getSurnames() {
+        return surnames;
+    }
+
+    /**
+     * Gets the list of locations
+     *
+     * @return Locations
+     */
+    public List<Location> getLocations() {
+        return locations;
+    }
+
+    /**
+     * Temporary class used to deserialize json files
+     */
+    private static class Names {
+        List<String> data = new ArrayList<>();
+    }
+
+    /**
+     * Temporary class used to deserialize json files
+     */
+    private static class Locations {
+        List<Location> data = new ArrayList<>();
+    }
+}
@@ -1,107 +1,170 @@
 package com.teranpeterson.server.helpers;
 
-import com.google.gson.Gson;
 import com.teranpeterson.server.dao.DAOException;
 import com.teranpeterson.server.dao.Database;
 import com.teranpeterson.server.dao.EventDAO;
 import com.teranpeterson.server.dao.PersonDAO;
+import com.teranpeterson.server.metrics.Histogram;
+import com.teranpeterson.server.metrics.Metrics;
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.model.Event;
 import com.teranpeterson.server.model.Person;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Generates random ancestors and corresponding events for a user. Uses json files with names and locations to randomly generate
  * location for the persons and events. Uses sudo random calculations to keep events in chronological order
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.12
  */
 public class Generator {
-    private Data data = new Data();
+    /**
+     * Family trees with at least this many generations above the parents are split into a task for the father's side and
+     * a task for the mother's side. Smaller trees are built on the calling thread, which covers the default 4 generations.
+     */
+    private static final int FORK_THRESHOLD = 8;
+
+    // Metrics
+    private static final Histogram DURATION = Metrics.getInstance().histogram("familymap_generator_duration_seconds",
+            "Time to generate and save a family tree", new double[]{0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+                    5, 10, 30, 60});
+    private static final LongAdder PERSONS = Metrics.getInstance().counter("familymap_generator_persons_total",
+            "Persons saved by the generator, including the user's own person");
+    private static final LongAdder EVENTS = Metrics.getInstance().counter("familymap_generator_events_total",
+            "Events saved by the generator");
+    private static final LongAdder FAILURES = Metrics.getInstance().counter("familymap_generator_failures_total",
+            "Family trees that couldn't be saved");
+
+    private final Corpus data = Corpus.get();
     private Database db = new Database();
     private String username;
 
     /**
-     * Constructor for Generator. Loads the json files and sets the username
+     * Constructor for Generator. Uses the shared name and location corpus
      */
     public Generator() {
-        loadFiles();
+
     }
 
     /**
      * Loads the current person and recursively adds specified number of generations. Each generation is approximately 23
-     * years apart and uses sudo random numbers to add variability. Birth, marriage and death are generated for each new person
+     * years apart and uses sudo random numbers to add variability. Birth, marriage and death are generated for each new person.
+     * The whole tree is built in memory before the write lock is taken, then written to the database in a single
+     * transaction, so other writers only wait for the inserts. Deep trees are built in parallel, see {@link #FORK_THRESHOLD}.
      *
      * @param personID       PersonID of user's person
      * @param numGenerations Number of generations back to go
-     * @throws DAOException Database exception
+     * @throws DAOException Database exception or the person doesn't exist
      */
+    @SuppressWarnings("try")
     public void generate(String personID, int numGenerations) throws DAOException {
-        // Loads the current user's person info
-        Connection conn = db.openConnection();
-        PersonDAO personDAO = new PersonDAO(conn);
-        EventDAO eventDAO = new EventDAO(conn);
-        Person person = personDAO.find(personID);
-        this.username = person.getDescendant();
-
-        // Removes all persons and events related to the user
-        personDAO.deleteRelatives(username);
-        eventDAO.deleteEvents(username);
-        db.closeConnection(true);
+        long start = System.nanoTime();
+        try (Timing.Stage stage = Timing.stage("generate")) {
+            // Loads the current user's person info
+            Person person;
+            try {
+                person = new PersonDAO(db.openConnection()).find(personID);
+            } finally {
+                db.release();
+            }
+            if (person == null) throw new DAOException("ERROR: Unable to find person '" + personID + "' in database");
+            this.username = person.getDescendant();
+            List<Person> persons = new ArrayList<>();
+            List<Event> events = new ArrayList<>();
 
-        // Generates events for the user
-        generateEvents(personID, 1997);
+            // Generates events for the user
+            generateEvents(personID, 1997, events);
 
-        // Calls recursive function to create ancestors
-        String fid = UUID.randomUUID().toString().substring(0, 6);
-        String mid = UUID.randomUUID().toString().substring(0, 6);
-        person.setFather(generatePerson("m", fid, mid, 1997 - 23, numGenerations - 1));
-        person.setMother(generatePerson("f", mid, fid, 1997 - 23, numGenerations - 1));
+            // Creates ancestors
+            if (numGenerations > 0) {
+                generateParents(person, 1997 - 23, numGenerations - 1, persons, events);
+            }
+            persons.add(person);
+
+            // Replaces all persons and events related to the user, including the user's updated person
+            try {
+                Connection conn = db.openWriteConnection();
+                PersonDAO personDAO = new PersonDAO(conn);
+                EventDAO eventDAO = new EventDAO(conn);
+                personDAO.deleteRelatives(username);
+                eventDAO.deleteEvents(username);
+                personDAO.insertAll(persons);
+                eventDAO.insertAll(events);
+                db.closeConnection(true);
+            } finally {
+                db.release(); // Don't leave a pooled connection checked out with an open transaction
+            }
+            PERSONS.add(persons.size());
+            EVENTS.add(events.size());
+            DURATION.observeNanos(System.nanoTime() - start);
+        } catch (DAOException | RuntimeException e) {
+            FAILURES.increment();
+            throw e;
+        }
+    }
 
-        // Updates the user's person data in the database
-        conn = db.openConnection();
-        personDAO = new PersonDAO(conn);
-        personDAO.insert(person);
-        db.closeConnection(true);
+    /**
+     * Creates a father and mother for a person, along with all of their ancestors. When the parents have enough generations
+     * above them, the two family trees are built at the same time on the common fork/join pool.
+     *
+     * @param child          Person to add parents to
+     * @param year           Current year to create the parents' events with
+     * @param numGenerations Number of generations left to go above the parents
+     * @param persons        List the new persons are added to
+     * @param events         List the new events are added to
+     */
+    private void generateParents(Person child, int year, int numGenerations, List<Person> persons, List<Event> events) {
+        String fatherID = IdGenerator.next();
+        String motherID = IdGenerator.next();
+        if (numGenerations >= FORK_THRESHOLD) {
+            Ancestors father = new Ancestors("m", fatherID, motherID, year, numGenerations);
+            Ancestors mother = new Ancestors("f", motherID, fatherID, year, numGenerations);
+            ForkJoinTask.invokeAll(father, mother);
+            persons.addAll(father.persons);
+            persons.addAll(mother.persons);
+            events.addAll(father.events);
+            events.addAll(mother.events);
+        } else {
+            generatePerson("m", fatherID, motherID, year, numGenerations, persons, events);
+            generatePerson("f", motherID, fatherID, year, numGenerations, persons, events);
+        }
+        child.setFather(fatherID);
+        child.setMother(motherID);
     }
 
     /**
      * Recursive function that creates ancestors for a person. A person is created and a set of events are generated for that
-     * person. Recursively adds a mother and father to the created person. Adds everything to the database.
+     * person. Recursively adds a mother and father to the created person. Adds everything to the lists of persons and events
+     * to insert.
      *
      * @param gender         Gender (m or f)
      * @param personID       ID assigned by last iteration (used by spouse)
      * @param spouseID       Spouse's id
      * @param year           Current year to create events with
      * @param numGenerations Number of generations left to go
-     * @return ID of the person just created
-     * @throws DAOException Database exception
+     * @param persons        List the new persons are added to
+     * @param events         List the new events are added to
      */
-    private String generatePerson(String gender, String personID, String spouseID, int year, int numGenerations) throws DAOException {
+    private void generatePerson(String gender, String personID, String spouseID, int year, int numGenerations,
+                                List<Person> persons, List<Event> events) {
         // Creates a new person and corresponding events
         Person person = new Person(personID, username, getFirstName(gender), getSurname(), gender, spouseID);
-        generateEvents(person.getPersonID(), year);
+        generateEvents(person.getPersonID(), year, events);
 
         // Recursively creates ancestors for that person
-        if (numGenerations != 0) {
-            Random rand = new Random();
-            int r = rand.nextInt(4);
-            String fatherID = UUID.randomUUID().toString().substring(0, 6);
-            String motherID = UUID.randomUUID().toString().substring(0, 6);
-            person.setFather(generatePerson("m", fatherID, motherID, year - 23 + r, numGenerations - 1));
-            person.setMother(generatePerson("f", motherID, fatherID, year - 23 + r, numGenerations - 1));
+        if (numGenerations > 0) {
+            int r = ThreadLocalRandom.current().nextInt(4);
+            generateParents(person, year - 23 + r, numGenerations - 1, persons, events);
         }
 
-        // Adds new person to the database
-        Connection conn = db.openConnection();
-        PersonDAO personDAO = new PersonDAO(conn);
-        personDAO.insert(person);
-        db.closeConnection(true);
-        return person.getPersonID();
+        persons.add(person);
     }
 
     /**
@@ -110,10 +173,10 @@ public class Generator {
      *
      * @param personID ID of person the event belongs to
      * @param year     Current year to make events with
-     * @throws DAOException Database exception
+     * @param events   List the new events are added to
      */
-    private void generateEvents(String personID, int year) throws DAOException {
-        Random rand = new Random();
+    private void generateEvents(String personID, int year, List<Event> events) {
+        Random rand = ThreadLocalRandom.current();
 
         // Creates birth with random location and date within 3 years of current year
         Location birthLoc = getLocation();
@@ -131,14 +194,11 @@ public class Generator {
         Location deathLoc = getLocation();
         Event death = new Event(username, personID, deathLoc.getLatitude(), deathLoc.getLongitude(), deathLoc.getCountry(), deathLoc.getCity(), "Death", year + 67 + rand.nextInt(20));
 
-        // Only adds event to database if it happened in the past
-        Connection conn = db.openConnection();
-        EventDAO eventDAO = new EventDAO(conn);
-        if (birth.getYear() < 2019) eventDAO.insert(birth);
-        if (baptism.getYear() < 2019) eventDAO.insert(baptism);
-        if (marriage.getYear() < 2019) eventDAO.insert(marriage);
-        if (death.getYear() < 2019) eventDAO.insert(death);
-        db.closeConnection(true);
+        // Only adds event if it happened in the past
+        if (birth.getYear() < 2019) events.add(birth);
+        if (baptism.getYear() < 2019) events.add(baptism);
+        if (marriage.getYear() < 2019) events.add(marriage);
+        if (death.getYear() < 2019) events.add(death);
     }
 
     /**
@@ -148,12 +208,12 @@ public class Generator {
      * @return Random first name
      */
     private String getFirstName(String gender) {
-        Random rand = new Random();
+        Random rand = ThreadLocalRandom.current();
         if (gender.equals("m")) {
-            return data.male.get(rand.nextInt(144));
+            return data.getMale().get(rand.nextInt(data.getMale().size()));
         }
         if (gender.equals("f")) {
-            return data.female.get(rand.nextInt(147));
+            return data.getFemale().get(rand.nextInt(data.getFemale().size()));
         }
         return null;
     }
@@ -164,8 +224,8 @@ public class Generator {
      * @return Random surname
      */
     private String getSurname() {
-        Random rand = new Random();
-        return data.sur.get(rand.nextInt(152));
+        Random rand = ThreadLocalRandom.current();
+        return data.getSurnames().get(rand.nextInt(data.getSurnames().size()));
     }
 
     /**
@@ -174,8 +234,8 @@ public class Generator {
      * @return Random location
      */
     private Location getLocation() {
-        Random rand = new Random();
-        return data.locations.get(rand.nextInt(978));
+        Random rand = ThreadLocalRandom.current();
+        return data.getLocations().get(rand.nextInt(data.getLocations().size()));
     }
 
     /**
@@ -185,112 +245,35 @@ public class Generator {
      * @return Sudo random location
      */
     private Location getLocation(int n) {
-        return data.locations.get(n % 978);
+        return data.getLocations().get(n % data.getLocations().size());
     }
 
     /**
-     * Loads lists of random names and locations from 4 different json files and stores them in a Data object
+     * Builds one side of a family tree on the fork/join pool. Each task collects its own persons and events, which are
+     * merged by the task that forked it.
      */
-    private void loadFiles() {
-        // Load male names
-        StringBuilder male = new StringBuilder();
-        try (Scanner scanner = new Scanner(new File("resources/json/mnames.json"))) {
-            while (scanner.hasNext()) {
-                male.append(scanner.next());
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    private class Ancestors extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String gender;
+        private final String personID;
+        private final String spouseID;
+        private final int year;
+        private final int numGenerations;
+        private final List<Person> persons = new ArrayList<>();
+        private final List<Event> events = new ArrayList<>();
+
+        Ancestors(String gender, String personID, String spouseID, int year, int numGenerations) {
+            this.gender = gender;
+            this.personID = personID;
+            this.spouseID = spouseID;
+            this.year = year;
+            this.numGenerations = numGenerations;
         }
 
-        // Deserialize and add to data object
-        Names mnames = new Gson().fromJson(male.toString(), Names.class);
-        data.male = mnames.data;
-
-        // Load female names
-        StringBuilder female = new StringBuilder();
-        try (Scanner scanner = new Scanner(new File("resources/json/fnames.json"))) {
-            while (scanner.hasNext()) {
-                female.append(scanner.next());
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        // Deserialize and add to data object
-        Names fnames = new Gson().fromJson(female.toString(), Names.class);
-        data.female = fnames.data;
-
-        // Load surnames
-        StringBuilder sur = new StringBuilder();
-        try (Scanner scanner = new Scanner(new File("resources/json/snames.json"))) {
-            while (scanner.hasNext()) {
-                sur.append(scanner.next());
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        // Deserialize and add to data object
-        Names snames = new Gson().fromJson(sur.toString(), Names.class);
-        data.sur = snames.data;
-
-        // Load locations
-        StringBuilder loc = new StringBuilder();
-        try (Scanner scanner = new Scanner(new File("resources/json/locations.json"))) {
-            while (scanner.hasNext()) {
-                loc.append(scanner.next());
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        // Deserialize and add to data object
-        Locations locations = new Gson().fromJson(loc.toString(), Locations.class);
-        data.locations = locations.data;
-    }
-}
-
-/**
- * Class containing lists of names and locations to use in the generator
- */
-class Data {
-    List<String> male;
-    List<String> female;
-    List<String> sur;
-    List<Location> locations;
-
-    Data() {
-        male = new ArrayList<>();
-        female = new ArrayList<>();
-        sur = new ArrayList<>();
-        locations = new ArrayList<>();
-    }
-}
-
-/**
- * Temporary class used to deserialize json files
- */
-class Names {
-    List<String> data;
-
-    public Names() {
-        data = new ArrayList<>();
-    }
-
-    public void out() {
-        for (String s : data) {
-            System.out.println(s);
+        @Override
+        protected void compute() {
+            generatePerson(gender, personID, spouseID, year, numGenerations, persons, events);
         }
     }
 }
-
-/**
- * Temporary class used to deserialize json files
- */
-class Locations {
-    List<Location> data;
-
-    public Locations() {
-        data = new ArrayList<>();
-    }
-}
\ No newline at end of file
@@ -0,0 +1,408 @@
+package com.teranpeterson.server.helpers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+import com.teranpeterson.server.model.User;
+import com.teranpeterson.server.result.EventResult;
+import com.teranpeterson.server.result.LoginResult;
+import com.teranpeterson.server.result.PersonResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gson instance shared by the whole server. Gson is thread safe, so one instance is built at startup instead of one per
+ * request. Persons, events, users and the results sent most often have hand-written type adapters so they are
+ * converted without reflection. The json they produce is the same as Gson's default: fields in declaration order
+ * (subclass first) with null fields left out.
+ *
+ * @author Teran Peterson
+ * @version v0.1.2
+ */
+public class Json {
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Person.class, new PersonAdapter().nullSafe())
+            .registerTypeAdapter(Event.class, new EventAdapter().nullSafe())
+            .registerTypeAdapter(User.class, new UserAdapter().nullSafe())
+            .registerTypeAdapter(PersonResult.class, new PersonResultAdapter().nullSafe())
+            .registerTypeAdapter(EventResult.class, new EventResultAdapter().nullSafe())
+            .registerTypeAdapter(LoginResult.class, new LoginResultAdapter().nullSafe())
+            .create();
+
+    private Json() {
+
+    }
+
+    /**
+     * Reads a string that may be null
+     */
+    private static String nextString(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+
+    /**
+     * Skips a null value. Numbers that are null are left at their default, the way Gson's reflection reads them.
+     *
+     * @return True if the value was null
+     */
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL) return false;
+        in.nextNull();
+        return true;
+    }
+
+    /**
+     * Reads a null in place of an object
+     */
+    private static <T> T nextNull(JsonReader in) throws IOException {
+        in.nextNull();
+        return null;
+    }
+
+    /**
+     * Writes a list of records with an adapter
+     */
+    private static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> adapter) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T record : list) {
+            adapter.write(out, record);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Reads a list of records with an adapter
+     */
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(adapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static class PersonAdapter extends TypeAdapter<Person> {
+        @Override
+        public void write(JsonWriter out, Person person) throws IOException {
+            out.beginObject();
+            out.name("personID").value(person.getPersonID());
+            out.name("descendant").value(person.getDescendant());
+            out.name("firstName").value(person.getFirstName());
+            out.name("lastName").value(person.getLastName());
+            out.name("gender").value(person.getGender());
+            out.name("father").value(person.getFather());
+            out.name("mother").value(person.getMother());
+            out.name("spouse").value(person.getSpouse());
+            out.endObject();
+        }
+
+        @Override
+        public Person read(JsonReader in) throws IOException {
+            Person person = new Person();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "personID":
+                        person.setPersonID(nextString(in));
+                        break;
+                    case "descendant":
+                        person.setDescendant(nextString(in));
+                        break;
+                    case "firstName":
+                        person.setFirstName(nextString(in));
+                        break;
+                    case "lastName":
+                        person.setLastName(nextString(in));
+                        break;
+                    case "gender":
+                        person.setGender(nextString(in));
+                        break;
+                    case "father":
+                        person.setFather(nextString(in));
+                        break;
+                    case "mother":
+                        person.setMother(nextString(in));
+                        break;
+                    case "spouse":
+                        person.setSpouse(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return person;
+        }
+    }
+
+    static class EventAdapter extends TypeAdapter<Event> {
+        @Override
+        public void write(JsonWriter out, Event event) throws IOException {
+            out.beginObject();
+            out.name("eventID").value(event.getEventID());
+            out.name("descendant").value(event.getDescendant());
+            out.name("personID").value(event.getPersonID());
+            out.name("latitude").value(event.getLatitude());
+            out.name("longitude").value(event.getLongitude());
+            out.name("country").value(event.getCountry());
+            out.name("city").value(event.getCity());
+            out.name("eventType").value(event.getEventType());
+            out.name("year").value(event.getYear());
+            out.endObject();
+        }
+
+        @Override
+        public Event read(JsonReader in) throws IOException {
+            Event event = new Event();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "eventID":
+                        event.setEventID(nextString(in));
+                        break;
+                    case "descendant":
+                        event.setDescendant(nextString(in));
+                        break;
+                    case "personID":
+                        event.setPersonID(nextString(in));
+                        break;
+                    case "latitude":
+                        if (!skipNull(in)) event.setLatitude(in.nextDouble());
+                        break;
+                    case "longitude":
+                        if (!skipNull(in)) event.setLongitude(in.nextDouble());
+                        break;
+                    case "country":
+                        event.setCountry(nextString(in));
+                        break;
+                    case "city":
+                        event.setCity(nextString(in));
+                        break;
+                    case "eventType":
+                        event.setEventType(nextString(in));
+                        break;
+                    case "year":
+                        if (!skipNull(in)) event.setYear(in.nextInt());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return event;
+        }
+    }
+
+    static class UserAdapter extends TypeAdapter<User> {
+        @Override
+        public void write(JsonWriter out, User user) throws IOException {
+            out.beginObject();
+            out.name("userName").value(user.getUserName());
+            out.name("password").value(user.getPassword());
+            out.name("email").value(user.getEmail());
+            out.name("firstName").value(user.getFirstName());
+            out.name("lastName").value(user.getLastName());
+            out.name("gender").value(user.getGender());
+            out.name("personID").value(user.getPersonID());
+            out.endObject();
+        }
+
+        @Override
+        public User read(JsonReader in) throws IOException {
+            User user = new User();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "userName":
+                        user.setUserName(nextString(in));
+                        break;
+                    case "password":
+                        user.setPassword(nextString(in));
+                        break;
+                    case "email":
+                        user.setEmail(nextString(in));
+                        break;
+                    case "firstName":
+                        user.setFirstName(nextString(in));
+                        break;
+                    case "lastName":
+                        user.setLastName(nextString(in));
+                        break;
+                    case "gender":
+                        user.setGender(nextString(in));
+                        break;
+                    case "personID":
+                        user.setPersonID(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return user;
+        }
+    }
+
+    static class PersonResultAdapter extends TypeAdapter<PersonResult> {
+        private final PersonAdapter persons = new PersonAdapter();
+
+        @Override
+        public void write(JsonWriter out, PersonResult result) throws IOException {
+            out.beginObject();
+            if (result.getData() != null) {
+                out.name("data");
+                writeList(out, result.getData(), persons);
+            }
+            if (result.getPerson() != null) {
+                out.name("person");
+                persons.write(out, result.getPerson());
+            }
+            if (result.getNext() != null) {
+                out.name("next").value(result.getNext());
+            }
+            out.name("success").value(result.isSuccess());
+            out.name("message").value(result.getMessage());
+            out.endObject();
+        }
+
+        @Override
+        public PersonResult read(JsonReader in) throws IOException {
+            PersonResult result = new PersonResult();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "data":
+                        result.setData(readList(in, persons));
+                        break;
+                    case "person":
+                        result.setPerson(in.peek() == JsonToken.NULL ? nextNull(in) : persons.read(in));
+                        break;
+                    case "next":
+                        result.setNext(nextString(in));
+                        break;
+                    case "success":
+                        result.setSuccess(in.nextBoolean());
+                        break;
+                    case "message":
+                        result.setMessage(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    }
+
+    static class EventResultAdapter extends TypeAdapter<EventResult> {
+        private final EventAdapter events = new EventAdapter();
+
+        @Override
+        public void write(JsonWriter out, EventResult result) throws IOException {
+            out.beginObject();
+            if (result.getData() != null) {
+                out.name("data");
+                writeList(out, result.getData(), events);
+            }
+            if (result.getEvent() != null) {
+                out.name("event");
+                events.write(out, result.getEvent());
+            }
+            if (result.getNext() != null) {
+                out.name("next").value(result.getNext());
+            }
+            out.name("success").value(result.isSuccess());
+            out.name("message").value(result.getMessage());
+            out.endObject();
+        }
+
+        @Override
+        public EventResult read(JsonReader in) throws IOException {
+            EventResult result = new EventResult();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "data":
+                        result.setData(readList(in, events));
+                        break;
+                    case "event":
+                        result.setEvent(in.peek() == JsonToken.NULL ? nextNull(in) : events.read(in));
+                        break;
+                    case "next":
+                        result.setNext(nextString(in));
+                        break;
+                    case "success":
+                        result.setSuccess(in.nextBoolean());
+                        break;
+                    case "message":
+                        result.setMessage(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    }
+
+    static class LoginResultAdapter extends TypeAdapter<LoginResult> {
+        @Override
+        public void write(JsonWriter out, LoginResult result) throws IOException {
+            out.beginObject();
+            out.name("authToken").value(result.getAuthToken());
+            out.name("userName").value(result.getUserName());
+            out.name("personID").value(result.getPersonID());
+            out.name("success").value(result.isSuccess());
+            out.name("message").value(result.getMessage());
+            out.endObject();
+        }
+
+        @Override
+        public LoginResult read(JsonReader in) throws IOException {
+            LoginResult result = new LoginResult(null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "authToken":
+                        result.setAuthToken(nextString(in));
+                        break;
+                    case "userName":
+                        result.setUserName(nextString(in));
+                        break;
+                    case "personID":
+                        result.setPersonID(nextString(in));
+                        break;
+                    case "success":
+                        result.setSuccess(in.nextBoolean());
+                        break;
+                    case "message":
+                        result.setMessage(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    }
+}
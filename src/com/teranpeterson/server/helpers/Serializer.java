@@ -1,22 +1,32 @@
 package com.teranpeterson.server.helpers;
 
-import com.google.gson.Gson;
+import com.teranpeterson.server.metrics.Timing;
 import com.teranpeterson.server.result.EventResult;
 import com.teranpeterson.server.result.PersonResult;
 import com.teranpeterson.server.result.LoginResult;
+import com.teranpeterson.server.result.SyncResult;
 
 /**
  * Serializer for json objects
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.6
  */
 public class Serializer {
     public static String serialize(LoginResult result) {
-        return new Gson().toJson(result);
+        return toJson(result);
     }
 
-    public static String serialize(PersonResult result) { return new Gson().toJson(result); }
+    public static String serialize(PersonResult result) { return toJson(result); }
 
-    public static String serialize(EventResult result) { return new Gson().toJson(result); }
+    public static String serialize(EventResult result) { return toJson(result); }
+
+    public static String serialize(SyncResult result) { return toJson(result); }
+
+    @SuppressWarnings("try")
+    private static String toJson(Object result) {
+        try (Timing.Stage stage = Timing.stage("serialize")) {
+            return Json.GSON.toJson(result);
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package com.teranpeterson.server.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with fixed bucket bounds, exported the way Prometheus expects. Every bucket and the running sum are striped
+ * adders, so any number of request threads can record into the same histogram without taking a lock or fighting over
+ * one cache line. Reading while threads record can see a value in its bucket but not yet in the sum, which is fine for
+ * monitoring.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class Histogram {
+    /**
+     * Bounds in seconds for request latencies, from half a millisecond to ten seconds
+     */
+    public static final double[] LATENCY_BOUNDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1,
+            2.5, 5, 10};
+
+    private final double[] bounds;
+    /**
+     * One counter per bound, plus the last for values above every bound
+     */
+    private final LongAdder[] counts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Creates an empty histogram
+     *
+     * @param bounds Upper bounds of the buckets in increasing order, without +Inf
+     */
+    public Histogram(double[] bounds) {
+        for (int i = 1; i < bounds.length; ++i) {
+            if (bounds[i] <= bounds[i - 1]) throw new IllegalArgumentException("Bucket bounds must increase");
+        }
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts one value
+     *
+     * @param value Value in the unit of the bounds
+     */
+    public void observe(double value) {
+        int i = Arrays.binarySearch(bounds, value);
+        counts[i < 0 ? -i - 1 : i].increment(); // A value equal to a bound belongs to that bound's bucket
+        sum.add(value);
+    }
+
+    /**
+     * Counts one duration in seconds
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        observe(nanos / 1e9);
+    }
+
+    /**
+     * Gets the upper bounds of the buckets
+     *
+     * @return Bounds without +Inf
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Gets the number of values in each bucket and below, the way Prometheus buckets are counted
+     *
+     * @return Cumulative counts, the last one for +Inf being the total
+     */
+    public long[] getCumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Gets the number of values counted
+     *
+     * @return Count
+     */
+    public long getCount() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the sum of every value counted
+     *
+     * @return Sum in the unit of the bounds
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+}
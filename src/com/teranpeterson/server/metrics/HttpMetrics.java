@@ -0,0 +1,150 @@
+package com.teranpeterson.server.metrics;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records requests, status codes, bytes read and written and latency for every endpoint. Handlers are wrapped, the same
+ * way as for compression, and the exchange's streams are swapped for counting ones so handlers don't change. Wrap
+ * outside compression to count the bytes actually sent.
+ * <p>
+ * Everything recorded per request goes to striped adders the endpoint looked up when it was wrapped, so the hot path
+ * takes no locks. A response code not seen before on an endpoint is looked up in the registry once.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class HttpMetrics {
+    /**
+     * Code label of requests that ended without sending a response, usually because the handler threw
+     */
+    private static final String NO_RESPONSE = "none";
+
+    private final Metrics metrics;
+
+    /**
+     * Creates request metrics recorded into a registry
+     *
+     * @param metrics Registry to record into
+     */
+    public HttpMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps a handler so its requests are recorded
+     *
+     * @param path    Context path the handler is registered at, used as the path label
+     * @param handler Handler for the endpoint
+     * @return Handler that records metrics
+     */
+    public HttpHandler wrap(String path, HttpHandler handler) {
+        Endpoint endpoint = new Endpoint(path);
+        return exchange -> {
+            long start = System.nanoTime();
+            CountingInput in = new CountingInput(exchange.getRequestBody());
+            CountingOutput out = new CountingOutput(exchange.getResponseBody());
+            exchange.setStreams(in, out);
+            try {
+                handler.handle(exchange);
+            } finally {
+                endpoint.record(exchange.getResponseCode(), in.count, out.count, System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Metrics of one endpoint
+     */
+    private class Endpoint {
+        final String path;
+        final ConcurrentMap<Integer, LongAdder> codes = new ConcurrentHashMap<>();
+        final LongAdder bytesIn;
+        final LongAdder bytesOut;
+        final Histogram latency;
+
+        Endpoint(String path) {
+            this.path = path;
+            bytesIn = metrics.counter("familymap_http_request_bytes_total", "Request body bytes read", "path", path);
+            bytesOut = metrics.counter("familymap_http_response_bytes_total", "Response body bytes sent", "path", path);
+            latency = metrics.histogram("familymap_http_request_duration_seconds",
+                    "Time from the handler starting to it returning", Histogram.LATENCY_BOUNDS, "path", path);
+        }
+
+        void record(int code, long in, long out, long nanos) {
+            LongAdder requests = codes.get(code);
+            if (requests == null) {
+                requests = codes.computeIfAbsent(code, c -> metrics.counter("familymap_http_requests_total",
+                        "Requests handled, by response code", "path", path, "code",
+                        c > 0 ? c.toString() : NO_RESPONSE));
+            }
+            requests.increment();
+            bytesIn.add(in);
+            bytesOut.add(out);
+            latency.observeNanos(nanos);
+        }
+    }
+
+    /**
+     * Request body that counts the bytes read from it. Only touched by the request's thread.
+     */
+    private static class CountingInput extends FilterInputStream {
+        long count;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) ++count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Response body that counts the bytes written to it. Only touched by the request's thread.
+     */
+    private static class CountingOutput extends FilterOutputStream {
+        long count;
+
+        CountingOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
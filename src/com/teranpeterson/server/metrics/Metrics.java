@@ -0,0 +1,244 @@
+package com.teranpeterson.server.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the server's metrics, written out in the Prometheus text format for the /metrics endpoint. Code on the
+ * request path asks the registry for its counters and histograms once and keeps them, so recording never touches the
+ * registry. Counters are striped adders and histograms are {@link Histogram}s, neither takes a lock.
+ * <p>
+ * Numbers that are already kept elsewhere, such as the connection pool and cache statistics, are registered as
+ * suppliers and only read when the metrics are scraped. Registering a supplier again under the same name and labels
+ * replaces the old one, so the last server started in a process is the one reported.
+ * <p>
+ * Labels are given as name, value pairs, e.g. {@code counter("requests_total", "Requests", "path", "/person")}.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class Metrics {
+    /**
+     * Content type of the Prometheus text format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static Metrics instance;
+
+    /**
+     * Metric families by name, in the order they were registered
+     */
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty registry
+     */
+    Metrics() {
+
+    }
+
+    /**
+     * Gets the registry shared by the whole server, creating it on first use
+     *
+     * @return Shared registry
+     */
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets a counter, creating it the first time it is asked for
+     *
+     * @param name   Metric name, ending in _total
+     * @param help   Description of the metric
+     * @param labels Label name, value pairs
+     * @return Counter to increment
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) series(name, help, "counter", labels(labels), LongAdder::new, false);
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere and read when the metrics are written
+     *
+     * @param name   Metric name, ending in _total
+     * @param help   Description of the metric
+     * @param value  Reads the current count
+     * @param labels Label name, value pairs
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        series(name, help, "counter", labels(labels), () -> value, true);
+    }
+
+    /**
+     * Registers a gauge read when the metrics are written
+     *
+     * @param name   Metric name
+     * @param help   Description of the metric
+     * @param value  Reads the current value
+     * @param labels Label name, value pairs
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        series(name, help, "gauge", labels(labels), () -> value, true);
+    }
+
+    /**
+     * Gets a histogram, creating it the first time it is asked for
+     *
+     * @param name   Metric name
+     * @param help   Description of the metric
+     * @param bounds Upper bounds of the buckets, only used when the histogram is created
+     * @param labels Label name, value pairs
+     * @return Histogram to record into
+     */
+    public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+        return (Histogram) series(name, help, "histogram", labels(labels), () -> new Histogram(bounds), false);
+    }
+
+    /**
+     * Looks up or adds a series of a metric family
+     *
+     * @param replace Whether an existing series is replaced instead of returned
+     */
+    private synchronized Object series(String name, String help, String type, String labels, Supplier<Object> creator,
+                                       boolean replace) {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) throw new IllegalArgumentException("Bad metric name " + name);
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(help, type);
+            families.put(name, family);
+        } else if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        Object series = family.series.get(labels);
+        if (series == null || replace) {
+            series = creator.get();
+            family.series.put(labels, series);
+        }
+        return series;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text format
+     *
+     * @return Metrics text
+     */
+    public String export() {
+        Map<String, Family> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, Family> entry : families.entrySet()) {
+                Family family = entry.getValue();
+                Family copy = new Family(family.help, family.type);
+                copy.series.putAll(family.series);
+                snapshot.put(entry.getKey(), copy);
+            }
+        }
+
+        // Suppliers are read outside the registry lock, some of them take locks of their own
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : snapshot.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(escape(family.help, false)).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                write(out, name, series.getKey(), series.getValue());
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the samples of one series
+     */
+    private static void write(StringBuilder out, String name, String labels, Object series) {
+        if (series instanceof Histogram) {
+            Histogram histogram = (Histogram) series;
+            double[] bounds = histogram.getBounds();
+            long[] counts = histogram.getCumulativeCounts();
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            for (int i = 0; i < counts.length; ++i) {
+                String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+                sample(out, name + "_bucket", prefix + "le=\"" + le + "\"", counts[i]);
+            }
+            sample(out, name + "_sum", labels, histogram.getSum());
+            sample(out, name + "_count", labels, counts[counts.length - 1]);
+        } else if (series instanceof LongAdder) {
+            sample(out, name, labels, ((LongAdder) series).sum());
+        } else {
+            sample(out, name, labels, ((DoubleSupplier) series).getAsDouble());
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Formats a sample value, whole numbers without a fraction and everyday sizes without an exponent
+     */
+    static String format(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        double abs = Math.abs(value);
+        if (value == Math.rint(value) && abs < 1e15) return Long.toString((long) value);
+        if (abs >= 1e-6 && abs < 1e15) return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        return Double.toString(value);
+    }
+
+    /**
+     * Renders label name, value pairs sorted by name, so the same labels in any order are the same series
+     */
+    static String labels(String... labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name, value pairs");
+        Map<String, String> sorted = new TreeMap<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            sorted.put(labels[i], labels[i + 1]);
+        }
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, String> label : sorted.entrySet()) {
+            parts.add(label.getKey() + "=\"" + escape(label.getValue(), true) + "\"");
+        }
+        return String.join(",", parts);
+    }
+
+    /**
+     * Escapes backslashes and line breaks, and quotes in label values
+     */
+    private static String escape(String text, boolean quotes) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            if (c == '\\') escaped.append("\\\\");
+            else if (c == '\n') escaped.append("\\n");
+            else if (c == '"' && quotes) escaped.append("\\\"");
+            else escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Metrics sharing a name, one series for each set of labels
+     */
+    private static class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new TreeMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
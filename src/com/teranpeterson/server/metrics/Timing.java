@@ -0,0 +1,171 @@
+package com.teranpeterson.server.metrics;
+
+/**
+ * Times the stages of a request, such as opening a connection, checking the auth token or serializing the result. The
+ * timing of the running request is kept per thread, so code anywhere between the handler and the DAOs can time a stage
+ * without it being passed down:
+ * <pre>
+ * try (Timing.Stage stage = Timing.stage("auth")) {
+ *     ...
+ * }
+ * </pre>
+ * The stage variable is never used in the block, so javac's try lint warns about it. Methods that time a stage suppress
+ * it with {@code @SuppressWarnings("try")}, on the method rather than the class so other try lint still shows.
+ * <p>
+ * A stage that runs more than once in a request adds up. Stages may overlap, e.g. a stage reading rows that also
+ * writes them to the client, so they don't have to add up to the request's total.
+ * <p>
+ * Timing is switched on and off for the whole server at runtime. While it is off, or on a thread with no request
+ * being timed, {@link #stage(String)} is a single volatile read and returns a stage that does nothing.
+ *
+ * @author Teran Peterson
+ * @version v0.1.2
+ */
+public class Timing {
+    /**
+     * Most distinct stages kept for one request, any more are ignored
+     */
+    static final int MAX_STAGES = 16;
+
+    private static final ThreadLocal<Timing> current = new ThreadLocal<>();
+    private static final Stage NONE = () -> {
+    };
+    private static volatile boolean enabled;
+
+    private final long start = System.nanoTime();
+    private final String[] names = new String[MAX_STAGES];
+    private final long[] nanos = new long[MAX_STAGES];
+    private int size;
+
+    private Timing() {
+
+    }
+
+    /**
+     * Switches stage timing on or off for every request started after this
+     *
+     * @param on True to time requests
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Checks whether requests are being timed
+     *
+     * @return True if timing is on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a request on the current thread. Every call that returns a timing must be followed by
+     * {@link #end()} on the same thread.
+     *
+     * @return Timing of the request, or null if timing is off
+     */
+    public static Timing begin() {
+        if (!enabled) return null;
+        Timing timing = new Timing();
+        current.set(timing);
+        return timing;
+    }
+
+    /**
+     * Stops timing stages of this request on the current thread
+     */
+    public void end() {
+        if (current.get() == this) current.remove();
+    }
+
+    /**
+     * Starts a stage of the request running on the current thread. Close it when the stage is done.
+     *
+     * @param name Stage name, a token without spaces or punctuation other than - and _
+     * @return Stage to close
+     */
+    public static Stage stage(String name) {
+        if (!enabled) return NONE;
+        Timing timing = current.get();
+        if (timing == null) return NONE;
+        long started = System.nanoTime();
+        return () -> timing.add(name, System.nanoTime() - started);
+    }
+
+    private void add(String name, long elapsed) {
+        for (int i = 0; i < size; ++i) {
+            if (names[i].equals(name)) {
+                nanos[i] += elapsed;
+                return;
+            }
+        }
+        if (size == MAX_STAGES) return;
+        names[size] = name;
+        nanos[size++] = elapsed;
+    }
+
+    /**
+     * Builds a Server-Timing header value from the stages finished so far, followed by the time since the request
+     * started, e.g. {@code db-open;dur=0.05, auth;dur=0.31, total;dur=1.2}. Durations are in milliseconds.
+     *
+     * @return Header value
+     */
+    public String header() {
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            header.append(names[i]).append(";dur=").append(millis(nanos[i])).append(", ");
+        }
+        return header.append("total;dur=").append(millis(getElapsed())).toString();
+    }
+
+    private static double millis(long nanos) {
+        return (nanos / 1000) / 1000.0;
+    }
+
+    /**
+     * Gets the number of distinct stages timed
+     *
+     * @return Stage count
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the name of a stage
+     *
+     * @param index From 0 to {@link #getSize()} - 1, in the order the stages first finished
+     * @return Stage name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Gets the total time of a stage
+     *
+     * @param index From 0 to {@link #getSize()} - 1
+     * @return Nanoseconds spent in the stage
+     */
+    public long getNanos(int index) {
+        return nanos[index];
+    }
+
+    /**
+     * Gets the time since the request started
+     *
+     * @return Nanoseconds
+     */
+    public long getElapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Stage of a request. Closing it adds its time to the request.
+     */
+    public interface Stage extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
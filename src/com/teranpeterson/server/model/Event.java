@@ -1,7 +1,8 @@
 package com.teranpeterson.server.model;
 
+import com.teranpeterson.server.helpers.IdGenerator;
+
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Events store information about significant events from a persons life, ie. birth, marriage, death, etc. Each event
@@ -9,7 +10,7 @@ import java.util.UUID;
  * to map these events.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.2
  */
 public class Event {
     /**
@@ -94,7 +95,7 @@ public class Event {
      * @param year       Year the event took place
      */
     public Event(String descendant, String personID, double latitude, double longitude, String country, String city, String eventType, int year) {
-        this(UUID.randomUUID().toString().substring(0, 6), descendant, personID, latitude, longitude, country, city, eventType, year);
+        this(IdGenerator.next(), descendant, personID, latitude, longitude, country, city, eventType, year);
     }
 
     /**
@@ -1,7 +1,8 @@
 package com.teranpeterson.server.model;
 
+import com.teranpeterson.server.helpers.IdGenerator;
+
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Persons are relatives and ancestors to users in the system. Each person contains information about their relationships
@@ -9,7 +10,7 @@ import java.util.UUID;
  * are not based on real data but are instead randomly generated.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.2
  */
 public class Person {
     /**
@@ -87,7 +88,7 @@ public class Person {
      * @param spouse     Spouse of the person (default null)
      */
     public Person(String descendant, String firstName, String lastName, String gender, String father, String mother, String spouse) {
-        this(UUID.randomUUID().toString().substring(0, 6), descendant, firstName, lastName, gender, father, mother, spouse);
+        this(IdGenerator.next(), descendant, firstName, lastName, gender, father, mother, spouse);
     }
 
     /**
@@ -1,7 +1,8 @@
 package com.teranpeterson.server.model;
 
+import com.teranpeterson.server.helpers.IdGenerator;
+
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Users are able to access the system and see their ancestors family history information. Each user has a unique
@@ -9,7 +10,7 @@ import java.util.UUID;
  * database for security. The users basic information is also stored. Each user has a corresponding Person object.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.2
  */
 public class User {
     /**
@@ -80,7 +81,7 @@ public class User {
      * @param gender    User's gender ('m' or 'f')
      */
     public User(String userName, String password, String email, String firstName, String lastName, String gender) {
-        this(userName, password, email, firstName, lastName, gender, UUID.randomUUID().toString().substring(0, 6));
+        this(userName, password, email, firstName, lastName, gender, IdGenerator.next());
     }
 
     /**
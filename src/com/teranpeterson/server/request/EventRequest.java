@@ -4,7 +4,7 @@ package com.teranpeterson.server.request;
  * Contains information about the Event(s) Request
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.2
  */
 public class EventRequest {
     /**
@@ -15,6 +15,14 @@ public class EventRequest {
      * Authentication token of the current user (used to find related persons)
      */
     private String authToken;
+    /**
+     * Maximum number of events in one page of the list, 0 for the whole list
+     */
+    private int limit;
+    /**
+     * Cursor the page starts after, from the previous page's result
+     */
+    private String after;
 
     /**
      * Creates an event request for ALL events for ALL persons related to the current user
@@ -71,4 +79,49 @@ public class EventRequest {
     public void setAuthToken(String authToken) {
         this.authToken = authToken;
     }
+
+    /**
+     * Gets the maximum number of events in one page
+     *
+     * @return Page size, or 0 for the whole list
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of events in one page
+     *
+     * @param limit Page size, or 0 for the whole list
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the cursor the page starts after
+     *
+     * @return Next cursor from the previous page, or null for the first page
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * Sets the cursor the page starts after
+     *
+     * @param after Next cursor from the previous page, or null for the first page
+     */
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    /**
+     * Checks whether one page of the list was asked for instead of the whole list
+     *
+     * @return True if a limit or cursor was given
+     */
+    public boolean isPaged() {
+        return limit > 0 || after != null;
+    }
 }
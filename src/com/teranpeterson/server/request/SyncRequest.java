@@ -0,0 +1,65 @@
+package com.teranpeterson.server.request;
+
+/**
+ * Contains information about the Sync Request
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class SyncRequest {
+    /**
+     * Authentication token of the current user
+     */
+    private String authToken;
+    /**
+     * Version returned by the client's last sync, null if the client has never synced
+     */
+    private Long since;
+
+    /**
+     * Creates a sync request for the changes since the given version
+     *
+     * @param authToken Authentication token of the current user
+     * @param since     Version from the client's last sync, or null for a full snapshot
+     */
+    public SyncRequest(String authToken, Long since) {
+        this.authToken = authToken;
+        this.since = since;
+    }
+
+    /**
+     * Gets the user's authentication token
+     *
+     * @return User's authentication token
+     */
+    public String getAuthToken() {
+        return authToken;
+    }
+
+    /**
+     * Sets the user's authentication token
+     *
+     * @param authToken User's authentication token
+     */
+    public void setAuthToken(String authToken) {
+        this.authToken = authToken;
+    }
+
+    /**
+     * Gets the version from the client's last sync
+     *
+     * @return Version, or null if the client has never synced
+     */
+    public Long getSince() {
+        return since;
+    }
+
+    /**
+     * Sets the version from the client's last sync
+     *
+     * @param since Version, or null if the client has never synced
+     */
+    public void setSince(Long since) {
+        this.since = since;
+    }
+}
@@ -8,7 +8,7 @@ import java.util.List;
  * Contains information about the results of an Event(s) Request
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.3
  */
 public class EventResult extends Result {
     /**
@@ -19,6 +19,17 @@ public class EventResult extends Result {
      * Event to return
      */
     private Event event;
+    /**
+     * Cursor for the next page of the list, null if there are no more pages
+     */
+    private String next;
+
+    /**
+     * Creates a successful event result whose events were streamed to a ListSink instead of stored in the result
+     */
+    public EventResult() {
+        super.success = true;
+    }
 
     /**
      * Creates a successful event result with information about ALL the data
@@ -94,4 +105,22 @@ public class EventResult extends Result {
     public void setEvent(Event event) {
         this.event = event;
     }
+
+    /**
+     * Gets the cursor for the next page of the list
+     *
+     * @return Cursor to pass as after, or null if there are no more pages
+     */
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Sets the cursor for the next page of the list
+     *
+     * @param next Cursor to pass as after, or null if there are no more pages
+     */
+    public void setNext(String next) {
+        this.next = next;
+    }
 }
@@ -8,7 +8,7 @@ import java.util.List;
  * Contains information about the results of a Person(s) Request
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.3
  */
 public class PersonResult extends Result {
     /**
@@ -19,6 +19,17 @@ public class PersonResult extends Result {
      * Person to return
      */
     private Person person;
+    /**
+     * Cursor for the next page of the list, null if there are no more pages
+     */
+    private String next;
+
+    /**
+     * Creates a successful person result whose persons were streamed to a ListSink instead of stored in the result
+     */
+    public PersonResult() {
+        super.success = true;
+    }
 
     /**
      * Creates a successful person result with information about ALL the data
@@ -94,4 +105,22 @@ public class PersonResult extends Result {
     public void setPerson(Person person) {
         this.person = person;
     }
+
+    /**
+     * Gets the cursor for the next page of the list
+     *
+     * @return Cursor to pass as after, or null if there are no more pages
+     */
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Sets the cursor for the next page of the list
+     *
+     * @param next Cursor to pass as after, or null if there are no more pages
+     */
+    public void setNext(String next) {
+        this.next = next;
+    }
 }
@@ -0,0 +1,94 @@
+package com.teranpeterson.server.result;
+
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+
+import java.util.List;
+
+/**
+ * Contains information about the results of a Sync Request. Either a snapshot of the user's whole tree, which replaces
+ * everything the client has, or the persons and events added since the client's last sync.
+ *
+ * @author Teran Peterson
+ * @version v0.1.0
+ */
+public class SyncResult extends Result {
+    /**
+     * Version to send as since on the next sync
+     */
+    private long version;
+    /**
+     * True if persons and events are the whole tree, false if they are only the additions
+     */
+    private boolean snapshot;
+    /**
+     * Persons in the tree, or added to it
+     */
+    private List<Person> persons;
+    /**
+     * Events in the tree, or added to it
+     */
+    private List<Event> events;
+
+    /**
+     * Creates a successful sync result
+     *
+     * @param version  Version to send as since on the next sync
+     * @param snapshot True if the lists are the whole tree
+     * @param persons  Persons in the tree, or added to it
+     * @param events   Events in the tree, or added to it
+     */
+    public SyncResult(long version, boolean snapshot, List<Person> persons, List<Event> events) {
+        this.version = version;
+        this.snapshot = snapshot;
+        this.persons = persons;
+        this.events = events;
+        super.success = true;
+    }
+
+    /**
+     * Creates a failing sync result with the given error message
+     *
+     * @param message Description of the error
+     */
+    public SyncResult(String message) {
+        super.message = message;
+        super.success = false;
+    }
+
+    /**
+     * Gets the version to send as since on the next sync
+     *
+     * @return Change log version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks whether the lists are the whole tree or only the additions
+     *
+     * @return True if the client should replace everything it has
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the persons in the tree, or added to it
+     *
+     * @return List of persons
+     */
+    public List<Person> getPersons() {
+        return persons;
+    }
+
+    /**
+     * Gets the events in the tree, or added to it
+     *
+     * @return List of events
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+}
@@ -1,5 +1,6 @@
 package com.teranpeterson.server.service;
 
+import com.teranpeterson.server.cache.ResponseCache;
 import com.teranpeterson.server.dao.DAOException;
 import com.teranpeterson.server.dao.Database;
 import com.teranpeterson.server.dao.UserDAO;
@@ -14,7 +15,7 @@ import java.sql.Connection;
  * Populates the server's database with generated data for the specified user name.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.4
  */
 public class FillService {
     /**
@@ -40,7 +41,6 @@ public class FillService {
         Database db = new Database();
         try {
             // Load the user's information
-            db.createTables();
             Connection conn = db.openConnection();
             UserDAO userDAO = new UserDAO(conn);
             User user = userDAO.find(request.getUserName());
@@ -60,6 +60,7 @@ public class FillService {
             // Create ancestral information for the user
             Generator generator = new Generator();
             generator.generate(user.getPersonID(), request.getGenerations());
+            ResponseCache.getInstance().invalidateUser(user.getUserName());
 
             // Return the number of person's and event's added
             int x = (int) Math.pow(2, (request.getGenerations() + 1)) - 1; // Calculate number of added persons (2^(n+1) - 1)
@@ -73,6 +74,8 @@ public class FillService {
                 d.printStackTrace();
                 return new FillResult(d.getMessage());
             }
+        } finally {
+            db.release();
         }
     }
 }
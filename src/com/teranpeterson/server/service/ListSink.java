@@ -0,0 +1,79 @@
+package com.teranpeterson.server.service;
+
+import java.io.IOException;
+
+/**
+ * Receives the records of a list result one at a time as they are read from the database, so a large list never has to
+ * be held in memory. {@link #begin()} is only called once the request has been validated, so a sink that was never
+ * started can still report an error instead.
+ *
+ * @author Teran Peterson
+ * @version v0.1.3
+ */
+public interface ListSink<T> {
+    /**
+     * Called once before the first record
+     *
+     * @throws IOException Unable to write
+     */
+    void begin() throws IOException;
+
+    /**
+     * Called once for each record in the list
+     *
+     * @param record Next record
+     * @throws IOException Unable to write
+     */
+    void write(T record) throws IOException;
+
+    /**
+     * Called before {@link #end()} when the list is one page of a longer list
+     *
+     * @param cursor Cursor for the next page
+     * @throws IOException Unable to write
+     */
+    default void next(String cursor) throws IOException {
+
+    }
+
+    /**
+     * Called once after the last record
+     *
+     * @throws IOException Unable to write
+     */
+    void end() throws IOException;
+
+    /**
+     * Called before anything else with the ETag of the list. If the receiver already has this version of the list
+     * nothing else is sent. Sinks that don't use ETags leave this alone.
+     *
+     * @param etag Tag that changes whenever the list does
+     * @return True if the receiver already has the list
+     * @throws IOException Unable to write
+     */
+    default boolean unchanged(String etag) throws IOException {
+        return false;
+    }
+
+    /**
+     * Sends a list serialized by an earlier response instead of receiving its records one at a time. Sinks that can't
+     * send serialized lists leave this alone and are given the records instead.
+     *
+     * @param json List as returned by {@link #recorded()}
+     * @return True if the list was sent
+     * @throws IOException Unable to write
+     */
+    default boolean replay(byte[] json) throws IOException {
+        return false;
+    }
+
+    /**
+     * Gets a copy of the serialized list written between {@link #begin()} and {@link #end()}, so it can be replayed
+     * later
+     *
+     * @return Serialized list, or null if the sink doesn't keep a copy or the list was too large to keep
+     */
+    default byte[] recorded() {
+        return null;
+    }
+}
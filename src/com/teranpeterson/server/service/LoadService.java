@@ -1,21 +1,33 @@
 package com.teranpeterson.server.service;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import com.teranpeterson.server.dao.*;
+import com.teranpeterson.server.helpers.Json;
 import com.teranpeterson.server.model.Event;
 import com.teranpeterson.server.model.Person;
 import com.teranpeterson.server.model.User;
 import com.teranpeterson.server.request.LoadRequest;
 import com.teranpeterson.server.result.LoadResult;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Loads the provided user, person and event data into the database.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.6
  */
 public class LoadService {
+    /**
+     * Number of records sent to the database at a time when streaming
+     */
+    static final int BATCH_SIZE = 500;
+
     /**
      * Creates a blank load service object
      */
@@ -25,7 +37,7 @@ public class LoadService {
 
     /**
      * Clears all data from the database (just like the /clear API), and then loads the
-     * posted user, person, and event data into the database.
+     * posted user, person, and event data into the database. The old data is kept if anything can't be loaded.
      *
      * @param request All the user, person and event data to load
      * @return Information about whether it was successful or not
@@ -33,38 +45,18 @@ public class LoadService {
     public LoadResult load(LoadRequest request) {
         Database db = new Database();
         try {
-            // Clear everything from the database
-            db.clear();
-            db.createTables();
-            Connection conn = db.openConnection();
+            // Clear everything from the database, in the same transaction as the import
+            Connection conn = db.openClearedConnection();
 
-            // Import all users
-            int x = 0;
-            UserDAO userDAO = new UserDAO(conn);
-            for (User u : request.getUsers()) {
-                userDAO.insert(u);
-                ++x;
-            }
-
-            // Import all persons
-            int y = 0;
-            PersonDAO personDAO = new PersonDAO(conn);
-            for (Person p : request.getPersons()) {
-                personDAO.insert(p);
-                ++y;
-            }
-
-            // Import all events
-            int z = 0;
-            EventDAO eventDAO = new EventDAO(conn);
-            for (Event e : request.getEvents()) {
-                eventDAO.insert(e);
-                ++z;
-            }
+            // Import all users, persons and events
+            new UserDAO(conn).insertAll(request.getUsers());
+            new PersonDAO(conn).insertAll(request.getPersons());
+            new EventDAO(conn).insertAll(request.getEvents());
 
             // Return the number of imported objects
             db.closeConnection(true);
-            return new LoadResult(x, y, z);
+            Database.clearCaches();
+            return new LoadResult(request.getUsers().size(), request.getPersons().size(), request.getEvents().size());
         } catch (DAOException e) {
             e.printStackTrace();
             try {
@@ -74,6 +66,111 @@ public class LoadService {
                 d.printStackTrace();
                 return new LoadResult(d.getMessage());
             }
+        } finally {
+            db.release();
         }
     }
+
+    /**
+     * Same as {@link #load(LoadRequest)}, but reads the request json as it goes instead of building the whole request in
+     * memory first. Records are inserted in batches of {@link #BATCH_SIZE} inside the same transaction as the clear, so
+     * memory use doesn't depend on the size of the request. Nothing is cleared or loaded if the json is malformed or any
+     * record can't be inserted.
+     *
+     * @param reader Request body in the same format as {@link LoadRequest}
+     * @return Information about whether it was successful or not
+     */
+    public LoadResult load(Reader reader) {
+        Database db = new Database();
+        try {
+            // Clear everything from the database, in the same transaction as the import
+            Connection conn = db.openClearedConnection();
+            UserDAO userDAO = new UserDAO(conn);
+            PersonDAO personDAO = new PersonDAO(conn);
+            EventDAO eventDAO = new EventDAO(conn);
+
+            // Import each list as it is read
+            int x = 0, y = 0, z = 0;
+            JsonReader json = new JsonReader(reader);
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "users":
+                        x += stream(json, User.class, userDAO::insertAll);
+                        break;
+                    case "persons":
+                        y += stream(json, Person.class, personDAO::insertAll);
+                        break;
+                    case "events":
+                        z += stream(json, Event.class, eventDAO::insertAll);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+
+            // Return the number of imported objects
+            db.closeConnection(true);
+            Database.clearCaches();
+            return new LoadResult(x, y, z);
+        } catch (DAOException e) {
+            e.printStackTrace();
+            return rollback(db, e.getMessage());
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            e.printStackTrace();
+            return rollback(db, "ERROR: Invalid request data");
+        } finally {
+            db.release();
+        }
+    }
+
+    /**
+     * Reads a json array of records and inserts them a batch at a time
+     *
+     * @param json   Reader positioned at the start of the array
+     * @param type   Type of record in the array
+     * @param insert Inserts one batch of records
+     * @return Number of records inserted
+     * @throws IOException  Malformed json
+     * @throws DAOException Problem inserting a batch
+     */
+    private <T> int stream(JsonReader json, Class<T> type, Batch<T> insert) throws IOException, DAOException {
+        int count = 0;
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        json.beginArray();
+        while (json.hasNext()) {
+            T record = Json.GSON.fromJson(json, type);
+            if (record == null) throw new JsonParseException("Null " + type.getSimpleName());
+            batch.add(record);
+            if (batch.size() == BATCH_SIZE) {
+                insert.insertAll(batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        json.endArray();
+        if (!batch.isEmpty()) {
+            insert.insertAll(batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private static LoadResult rollback(Database db, String message) {
+        try {
+            db.closeConnection(false);
+            return new LoadResult(message);
+        } catch (DAOException d) {
+            d.printStackTrace();
+            return new LoadResult(d.getMessage());
+        }
+    }
+
+    /**
+     * Inserts a batch of records, eg. {@link UserDAO#insertAll(List)}
+     */
+    private interface Batch<T> {
+        void insertAll(List<T> records) throws DAOException;
+    }
 }
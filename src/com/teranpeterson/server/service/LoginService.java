@@ -1,5 +1,6 @@
 package com.teranpeterson.server.service;
 
+import com.teranpeterson.server.cache.TokenCache;
 import com.teranpeterson.server.dao.*;
 import com.teranpeterson.server.model.AuthToken;
 import com.teranpeterson.server.model.User;
@@ -12,7 +13,7 @@ import java.sql.Connection;
  * Logs in the user and returns an auth token.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.4
  */
 public class LoginService {
     /**
@@ -37,8 +38,7 @@ public class LoginService {
         Database db = new Database();
         try {
             // Authenticate the user
-            db.createTables();
-            Connection conn = db.openConnection();
+            Connection conn = db.openWriteConnection();
             UserDAO userDAO = new UserDAO(conn);
             User user = userDAO.authenticate(request.getUserName(), request.getPassword());
 
@@ -49,6 +49,7 @@ public class LoginService {
                 authTokenDAO.insert(token);
 
                 db.closeConnection(true);
+                TokenCache.getInstance().put(token.getToken(), token.getUserName());
                 return new LoginResult(token.getToken(), user.getUserName(), user.getPersonID());
             } else {
                 db.closeConnection(false);
@@ -63,6 +64,8 @@ public class LoginService {
                 d.printStackTrace();
                 return new LoginResult(d.getMessage());
             }
+        } finally {
+            db.release();
         }
     }
 }
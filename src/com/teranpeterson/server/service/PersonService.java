@@ -1,5 +1,6 @@
 package com.teranpeterson.server.service;
 
+import com.teranpeterson.server.cache.ResponseCache;
 import com.teranpeterson.server.dao.AuthTokenDAO;
 import com.teranpeterson.server.dao.DAOException;
 import com.teranpeterson.server.dao.Database;
@@ -8,16 +9,24 @@ import com.teranpeterson.server.model.Person;
 import com.teranpeterson.server.request.PersonRequest;
 import com.teranpeterson.server.result.PersonResult;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Returns the single Person object with the specified ID or returns ALL family members of the current user.
  *
  * @author Teran Peterson
- * @version v0.1.1
+ * @version v0.1.7
  */
 public class PersonService {
+    /**
+     * Largest page of persons that can be asked for at once
+     */
+    public static final int MAX_LIMIT = 1000;
+
     /**
      * Create a blank person service object
      */
@@ -36,7 +45,6 @@ public class PersonService {
         Database db = new Database();
         try {
             // Validate the provided auth token
-            db.createTables();
             Connection conn = db.openConnection();
             AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
             String userName = authTokenDAO.validate(request.getAuthToken());
@@ -74,6 +82,106 @@ public class PersonService {
                 d.printStackTrace();
                 return new PersonResult(d.getMessage());
             }
+        } finally {
+            db.release();
+        }
+    }
+
+    /**
+     * Writes ALL family members related to the current user (determined by the auth token) to a sink as they are read from
+     * the database, instead of building a list first. Nothing is written if the auth token is invalid.
+     * Lists the sink serializes are kept in the {@link ResponseCache} and replayed until the user's data changes, and
+     * nothing is read at all if the sink already has the current version. If the request has a limit or cursor only one
+     * page is sent, and the result holds the cursor for the next page.
+     *
+     * @param request Information about the user whose persons to return
+     * @param sink    Receives each person
+     * @return Whether the persons were sent, or why not
+     */
+    public PersonResult relatives(PersonRequest request, ListSink<Person> sink) {
+        // Read before the database so a list read before a fill or load is never cached or tagged after it
+        ResponseCache cache = ResponseCache.getInstance();
+        long generation = cache.generation();
+
+        Database db = new Database();
+        try {
+            // Validate the provided auth token
+            Connection conn = db.openConnection();
+            AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
+            String userName = authTokenDAO.validate(request.getAuthToken());
+
+            // Return if auth token is invalid
+            if (userName == null) {
+                try {
+                    db.closeConnection(false);
+                    return new PersonResult("ERROR: Invalid auth token");
+                } catch (DAOException e) {
+                    e.printStackTrace();
+                    return new PersonResult(e.getMessage());
+                }
+            }
+
+            // Nothing to send if the client already has the latest list
+            String etag = request.isPaged() ? cache.etag(userName, generation, request.getLimit(), request.getAfter())
+                    : cache.etag(userName, generation);
+            if (etag != null && sink.unchanged(etag)) {
+                db.closeConnection(true);
+                return new PersonResult();
+            }
+
+            // Send the serialized list from the last time, if nothing has changed since. Pages aren't cached.
+            byte[] cached = request.isPaged() ? null : cache.get(userName, ResponseCache.PERSONS);
+            if (cached != null && sink.replay(cached)) {
+                db.closeConnection(true);
+                return new PersonResult();
+            }
+
+            // Stream persons to the sink one row at a time
+            Consumer<Person> write = person -> {
+                try {
+                    sink.write(person);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            PersonDAO personDAO = new PersonDAO(conn);
+            String next = null;
+            sink.begin();
+            if (request.isPaged()) {
+                int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_LIMIT) : MAX_LIMIT;
+                next = personDAO.forEachRelative(userName, request.getAfter(), limit, write);
+                if (next != null) sink.next(next);
+            } else {
+                personDAO.forEachRelative(userName, write);
+            }
+            sink.end();
+            db.closeConnection(true);
+
+            byte[] json = request.isPaged() ? null : sink.recorded();
+            if (json != null) cache.put(userName, ResponseCache.PERSONS, json, generation);
+            PersonResult result = new PersonResult();
+            result.setNext(next);
+            return result;
+        } catch (DAOException e) {
+            e.printStackTrace();
+            try {
+                db.closeConnection(false);
+                return new PersonResult(e.getMessage());
+            } catch (DAOException d) {
+                d.printStackTrace();
+                return new PersonResult(d.getMessage());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            try {
+                db.closeConnection(false);
+                return new PersonResult("ERROR: Unable to send persons");
+            } catch (DAOException d) {
+                d.printStackTrace();
+                return new PersonResult(d.getMessage());
+            }
+        } finally {
+            db.release();
         }
     }
 }
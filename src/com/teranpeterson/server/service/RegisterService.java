@@ -1,5 +1,6 @@
 package com.teranpeterson.server.service;
 
+import com.teranpeterson.server.cache.TokenCache;
 import com.teranpeterson.server.dao.*;
 import com.teranpeterson.server.helpers.Generator;
 import com.teranpeterson.server.model.AuthToken;
@@ -15,7 +16,7 @@ import java.sql.Connection;
  * user, logs the user in, and returns an auth token.
  *
  * @author Teran Peterson
- * @version v0.1.2
+ * @version v0.1.5
  */
 public class RegisterService {
     /**
@@ -51,8 +52,7 @@ public class RegisterService {
 
         Database db = new Database();
         try {
-            db.createTables();
-            Connection conn = db.openConnection();
+            Connection conn = db.openWriteConnection();
             UserDAO userDAO = new UserDAO(conn);
 
             // Check that the provided username is not already in use
@@ -78,12 +78,13 @@ public class RegisterService {
             generator.generate(newUser.getPersonID(), 4);
 
             // Establish session and return auth token
-            conn = db.openConnection();
+            conn = db.openWriteConnection();
             AuthToken token = new AuthToken(newUser.getUserName());
             AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
             authTokenDAO.insert(token);
 
             db.closeConnection(true);
+            TokenCache.getInstance().put(token.getToken(), token.getUserName());
             return new LoginResult(token.getToken(), newUser.getUserName(), newUser.getPersonID());
         } catch (DAOException e) {
             e.printStackTrace();
@@ -94,6 +95,8 @@ public class RegisterService {
                 d.printStackTrace();
                 return new LoginResult(d.getMessage());
             }
+        } finally {
+            db.release();
         }
     }
 }
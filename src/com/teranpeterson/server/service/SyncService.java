@@ -0,0 +1,84 @@
+package com.teranpeterson.server.service;
+
+import com.teranpeterson.server.dao.AuthTokenDAO;
+import com.teranpeterson.server.dao.ChangeLogDAO;
+import com.teranpeterson.server.dao.DAOException;
+import com.teranpeterson.server.dao.Database;
+import com.teranpeterson.server.dao.EventDAO;
+import com.teranpeterson.server.dao.PersonDAO;
+import com.teranpeterson.server.request.SyncRequest;
+import com.teranpeterson.server.result.SyncResult;
+
+import java.sql.Connection;
+
+/**
+ * Returns the persons and events added to the current user's tree since the client last synced, or the whole tree if
+ * the client has never synced or the tree was reset since then.
+ *
+ * @author Teran Peterson
+ * @version v0.1.1
+ */
+public class SyncService {
+    /**
+     * Creates a blank sync service object
+     */
+    public SyncService() {
+
+    }
+
+    /**
+     * Finds what changed in the current user's tree (determined by the auth token) since the given version. A snapshot is
+     * sent instead when the version is missing, older than the user's last /fill, /load or /clear, or newer than any
+     * version the server has handed out.
+     *
+     * @param request Information about the user and their last sync
+     * @return Changes since the last sync, or a snapshot
+     */
+    public SyncResult sync(SyncRequest request) {
+        Database db = new Database();
+        try {
+            // Validate the provided auth token
+            Connection conn = db.openConnection();
+            AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
+            String userName = authTokenDAO.validate(request.getAuthToken());
+
+            // Return if auth token is invalid
+            if (userName == null) {
+                try {
+                    db.closeConnection(false);
+                    return new SyncResult("ERROR: Invalid auth token");
+                } catch (DAOException e) {
+                    e.printStackTrace();
+                    return new SyncResult(e.getMessage());
+                }
+            }
+
+            // Everything is read in one transaction so the version matches the lists
+            ChangeLogDAO changeLogDAO = new ChangeLogDAO(conn);
+            PersonDAO personDAO = new PersonDAO(conn);
+            EventDAO eventDAO = new EventDAO(conn);
+            long version = changeLogDAO.latest();
+            Long since = request.getSince();
+            SyncResult result;
+            if (since == null || since < changeLogDAO.floor(userName) || since > version) {
+                result = new SyncResult(version, true, personDAO.findRelatives(userName), eventDAO.personEvents(userName));
+            } else {
+                result = new SyncResult(version, false, personDAO.findRelativesSince(userName, since),
+                        eventDAO.findEventsSince(userName, since));
+            }
+            db.closeConnection(true);
+            return result;
+        } catch (DAOException e) {
+            e.printStackTrace();
+            try {
+                db.closeConnection(false);
+                return new SyncResult(e.getMessage());
+            } catch (DAOException d) {
+                d.printStackTrace();
+                return new SyncResult(d.getMessage());
+            }
+        } finally {
+            db.release();
+        }
+    }
+}
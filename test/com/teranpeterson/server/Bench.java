@@ -0,0 +1,201 @@
+package com.teranpeterson.server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Small benchmark harness shared by the benchmark suites. Each benchmark is warmed up for a fixed time, then every call
+ * is timed on its own until the measuring time is up, so percentiles can be reported along with the mean.
+ * <p>
+ * Results are written as one json object per line with the suite, name, parameters and timings, after a first line
+ * describing the jvm. Pass the file from an earlier run with --compare to print how much each benchmark changed.
+ * <p>
+ * Options: --suite=a,b (default all) --warmup=ms (1000) --time=ms (3000) --out=file (stdout) --compare=file
+ */
+public class Bench {
+    /**
+     * Calls made even if they take longer than the measuring time, so slow benchmarks still get a spread
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    private final Set<String> suites = new HashSet<>();
+    private long warmupNanos = 1000_000_000L;
+    private long timeNanos = 3000_000_000L;
+    private PrintStream out = System.out;
+    private String compare;
+    private final Map<String, Double> results = new LinkedHashMap<>();
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    /**
+     * Everything the benchmarks return is folded into this, so the jit can't drop the work as unused
+     */
+    private volatile int sink;
+
+    /**
+     * Reads the harness options and writes the jvm line
+     *
+     * @param args --name=value options
+     * @return Harness ready to run benchmarks
+     * @throws IOException Unable to open the output file
+     */
+    public static Bench parse(String[] args) throws IOException {
+        Bench bench = new Bench();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Bad option " + arg);
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "suite":
+                    bench.suites.addAll(Arrays.asList(value.split(",")));
+                    break;
+                case "warmup":
+                    bench.warmupNanos = Long.parseLong(value) * 1000_000L;
+                    break;
+                case "time":
+                    bench.timeNanos = Long.parseLong(value) * 1000_000L;
+                    break;
+                case "out":
+                    bench.out = new PrintStream(Files.newOutputStream(Paths.get(value)), true, "UTF-8");
+                    break;
+                case "compare":
+                    bench.compare = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        JsonObject jvm = new JsonObject();
+        jvm.addProperty("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        jvm.addProperty("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        jvm.addProperty("cpus", Runtime.getRuntime().availableProcessors());
+        jvm.addProperty("time", System.currentTimeMillis());
+        bench.out.println(bench.gson.toJson(jvm));
+        return bench;
+    }
+
+    /**
+     * Checks whether a suite was asked for
+     *
+     * @param suite Suite name
+     * @return True if no suites were named or this one was
+     */
+    public boolean enabled(String suite) {
+        return suites.isEmpty() || suites.contains(suite);
+    }
+
+    /**
+     * Warms up and measures one benchmark, then writes its result
+     *
+     * @param suite  Suite the benchmark belongs to
+     * @param name   Benchmark name
+     * @param params Parameters such as a table size, may be empty
+     * @param op     Code to time
+     * @throws Exception Thrown by the benchmark
+     */
+    public void run(String suite, String name, String params, Op op) throws Exception {
+        if (!enabled(suite)) return;
+
+        long warm = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < warm) consume(op.run());
+
+        long[] samples = new long[1024];
+        int n = 0;
+        long start = System.nanoTime();
+        long end = start + timeNanos;
+        while (n < MIN_SAMPLES || System.nanoTime() < end) {
+            long before = System.nanoTime();
+            consume(op.run());
+            if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+            samples[n++] = System.nanoTime() - before;
+        }
+        long total = System.nanoTime() - start;
+        Arrays.sort(samples, 0, n);
+
+        double mean = 0;
+        for (int i = 0; i < n; ++i) {
+            mean += samples[i];
+        }
+        mean /= n * 1000.0;
+
+        JsonObject result = new JsonObject();
+        result.addProperty("suite", suite);
+        result.addProperty("name", name);
+        result.addProperty("params", params);
+        result.addProperty("samples", n);
+        result.addProperty("ops_per_s", round(n * 1e9 / total));
+        result.addProperty("mean_us", round(mean));
+        result.addProperty("min_us", round(samples[0] / 1000.0));
+        result.addProperty("p50_us", round(percentile(samples, n, 0.50)));
+        result.addProperty("p90_us", round(percentile(samples, n, 0.90)));
+        result.addProperty("p99_us", round(percentile(samples, n, 0.99)));
+        result.addProperty("max_us", round(samples[n - 1] / 1000.0));
+        out.println(gson.toJson(result));
+        out.flush();
+        System.err.printf("%-10s %-24s %-14s mean=%.2fus p99=%.2fus%n", suite, name, params, mean,
+                percentile(samples, n, 0.99));
+        results.put(key(suite, name, params), mean);
+    }
+
+    /**
+     * Closes the output and prints the change from an earlier run if one was given
+     *
+     * @throws IOException Unable to read the earlier results
+     */
+    public void finish() throws IOException {
+        if (out != System.out) out.close();
+        if (compare == null) return;
+
+        System.err.println();
+        System.err.println("Change in mean time from " + compare);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(compare), StandardCharsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                JsonObject old = new JsonParser().parse(line).getAsJsonObject();
+                if (!old.has("suite")) continue;
+                String key = key(old.get("suite").getAsString(), old.get("name").getAsString(),
+                        old.get("params").getAsString());
+                Double mean = results.get(key);
+                if (mean == null) continue;
+                double before = old.get("mean_us").getAsDouble();
+                System.err.printf("%-50s %10.2fus -> %10.2fus %+7.1f%%%n", key, before, mean,
+                        (mean - before) * 100 / before);
+            }
+        }
+    }
+
+    private void consume(Object result) {
+        if (result != null) sink += System.identityHashCode(result);
+    }
+
+    private static String key(String suite, String name, String params) {
+        return suite + "/" + name + (params.isEmpty() ? "" : "/" + params);
+    }
+
+    private static double percentile(long[] sorted, int n, double p) {
+        return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)] / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Code being measured. Return whatever it produced, or null.
+     */
+    public interface Op {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,22 @@
+package com.teranpeterson.server;
+
+import com.teranpeterson.server.dao.DaoBenchmark;
+import com.teranpeterson.server.handler.HandlerBenchmark;
+import com.teranpeterson.server.helpers.GeneratorBenchmark;
+import com.teranpeterson.server.helpers.SerializationBenchmark;
+
+/**
+ * Runs every benchmark suite: dao, generator, json and handler. Run from the project directory with
+ * {@code java Benchmarks [--suite=a,b] [--warmup=ms] [--time=ms] [--out=file] [--compare=file]}, for example
+ * {@code --out=before.jsonl} on one build and {@code --compare=before.jsonl} on the next.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.parse(args);
+        SerializationBenchmark.run(bench);
+        DaoBenchmark.run(bench);
+        GeneratorBenchmark.run(bench);
+        HandlerBenchmark.run(bench);
+        bench.finish();
+    }
+}
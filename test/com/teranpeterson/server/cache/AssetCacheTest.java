@@ -0,0 +1,100 @@
+package com.teranpeterson.server.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class AssetCacheTest {
+    private Path root;
+    private AssetCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("web");
+        Files.createDirectories(root.resolve("css"));
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            page.append("<p>family map</p>\n");
+        }
+        Files.write(root.resolve("index.html"), page.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("index.html~"), new byte[]{1});
+        Files.write(root.resolve("css/main.css"), "p{}".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("favicon.ico"), new byte[]{0, 0, 1, 0});
+        cache = AssetCache.load(root);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void getPass() {
+        // Check that files are found by path with their content types and / is served index.html
+        assertEquals(3, cache.getSize());
+        assertSame(cache.get("/index.html"), cache.get("/"));
+        assertEquals("text/html; charset=utf-8", cache.get("/").getType());
+        assertEquals("text/css; charset=utf-8", cache.get("/css/main.css").getType());
+        assertEquals("image/x-icon", cache.get("/favicon.ico").getType());
+        assertEquals(3, cache.get("/css/main.css").getContent().length);
+    }
+
+    @Test
+    public void getFail() {
+        // Check that missing files, backups and paths leaving the root aren't served
+        assertNull(cache.get("/missing.html"));
+        assertNull(cache.get("/index.html~"));
+        assertNull(cache.get("/../index.html"));
+        assertNull(cache.get("/css/../index.html"));
+        assertNull(cache.get("/css\\main.css"));
+        assertNull(cache.get("index.html"));
+        assertNull(cache.get(null));
+    }
+
+    @Test
+    public void gzipPass() throws Exception {
+        AssetCache.Asset page = cache.get("/index.html");
+
+        // Check that the gzipped copy is kept only when it is smaller and unzips to the file
+        assertNotNull(page.getGzipped());
+        assertTrue(page.getGzipped().length < page.getContent().length);
+        assertArrayEquals(page.getContent(), gunzip(page.getGzipped()));
+        assertNull(cache.get("/css/main.css").getGzipped());
+    }
+
+    @Test
+    public void validatorsPass() {
+        AssetCache.Asset page = cache.get("/index.html");
+
+        // Check that the ETag follows the contents and Last-Modified has whole seconds
+        assertTrue(page.getEtag().startsWith("\"") && page.getEtag().endsWith("\""));
+        assertNotEquals(page.getEtag(), cache.get("/css/main.css").getEtag());
+        assertEquals(0, page.getLastModified() % 1000);
+        assertTrue(page.getLastModifiedDate().endsWith("GMT"));
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            byte[] buffer = new byte[1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+package com.teranpeterson.server.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+    private ResponseCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ResponseCache(40);
+    }
+
+    @Test
+    public void getPass() {
+        cache.put("username", ResponseCache.PERSONS, new byte[10], cache.generation());
+
+        // Check that a cached list is found for its own user and endpoint only
+        assertEquals(10, cache.get("username", ResponseCache.PERSONS).length);
+        assertNull(cache.get("username", ResponseCache.EVENTS));
+        assertNull(cache.get("other", ResponseCache.PERSONS));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictPass() {
+        cache.put("first", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.put("second", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.put("third", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.get("first", ResponseCache.PERSONS);
+        cache.put("fourth", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.put("fifth", ResponseCache.PERSONS, new byte[10], cache.generation());
+
+        // Check that least recently used lists are dropped to stay under the byte limit
+        assertEquals(40, cache.getBytes());
+        assertNull(cache.get("second", ResponseCache.PERSONS));
+        assertNotNull(cache.get("first", ResponseCache.PERSONS));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void putFail() {
+        long generation = cache.generation();
+        cache.invalidateUser("username");
+        cache.put("username", ResponseCache.PERSONS, new byte[10], generation);
+        cache.put("username", ResponseCache.EVENTS, new byte[11], cache.generation());
+
+        // Check that lists read before the user's data changed, or too large to be worth keeping, aren't cached
+        assertNull(cache.get("username", ResponseCache.PERSONS));
+        assertNull(cache.get("username", ResponseCache.EVENTS));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void invalidatePass() {
+        cache.put("username", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.put("username", ResponseCache.EVENTS, new byte[10], cache.generation());
+        cache.put("other", ResponseCache.PERSONS, new byte[10], cache.generation());
+        cache.invalidateUser("username");
+
+        // Check that only the user's lists are removed
+        assertNull(cache.get("username", ResponseCache.PERSONS));
+        assertNull(cache.get("username", ResponseCache.EVENTS));
+        assertNotNull(cache.get("other", ResponseCache.PERSONS));
+        assertEquals(10, cache.getBytes());
+
+        // Check that clearing removes everything
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void etagPass() {
+        long generation = cache.generation();
+        String tag = cache.etag("username", generation);
+        cache.invalidateUser("other");
+
+        // Check that a user's tag only changes when their data does
+        assertEquals(tag, cache.etag("username", cache.generation()));
+        assertNotEquals(tag, cache.etag("other", cache.generation()));
+        cache.invalidateUser("username");
+        assertNull(cache.etag("username", generation));
+        assertNotEquals(tag, cache.etag("username", cache.generation()));
+
+        // Check that clearing changes every tag and that tags aren't shared between caches
+        String cleared = cache.etag("other", cache.generation());
+        cache.clear();
+        assertNotEquals(cleared, cache.etag("other", cache.generation()));
+        assertNotEquals(tag, new ResponseCache(40).etag("username", 0));
+    }
+
+    @Test
+    public void etagPagePass() {
+        long generation = cache.generation();
+        String tag = cache.etag("username", generation);
+        String page = cache.etag("username", generation, 100, null);
+
+        // Check that each page has its own tag, apart from the whole list's
+        assertNotEquals(tag, page);
+        assertEquals(page, cache.etag("username", generation, 100, null));
+        assertNotEquals(page, cache.etag("username", generation, 50, null));
+        assertNotEquals(page, cache.etag("username", generation, 100, "p1"));
+
+        // Check that cursors can't break the quoting
+        String odd = cache.etag("username", generation, 100, "a \"b\"");
+        assertEquals(2, odd.chars().filter(c -> c == '"').count());
+        assertFalse(odd.contains(" "));
+
+        // Check that page tags change with the user's data
+        cache.invalidateUser("username");
+        assertNull(cache.etag("username", generation, 100, null));
+    }
+}
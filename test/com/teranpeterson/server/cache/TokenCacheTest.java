@@ -0,0 +1,77 @@
+package com.teranpeterson.server.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenCacheTest {
+    private TokenCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new TokenCache(2, 60000);
+    }
+
+    @Test
+    public void getPass() {
+        cache.put("token", "username");
+
+        // Check that a cached token is found and counted as a hit
+        assertEquals("username", cache.get("token"));
+        assertNull(cache.get("other"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expirePass() throws Exception {
+        cache = new TokenCache(2, 0);
+        cache.put("token", "username");
+        Thread.sleep(5);
+
+        // Check that expired tokens are not trusted
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void evictPass() {
+        cache.put("first", "username");
+        cache.put("second", "username");
+        cache.get("first");
+        cache.put("third", "username");
+
+        // Check that the least recently used token is dropped when the cache is full
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get("second"));
+        assertEquals("username", cache.get("first"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void invalidatePass() {
+        cache.put("first", "username");
+        cache.put("second", "other");
+        cache.invalidateUser("username");
+        cache.invalidate("second");
+
+        // Check that invalidated tokens are removed
+        assertNull(cache.get("first"));
+        assertNull(cache.get("second"));
+    }
+
+    @Test
+    public void clearPass() {
+        long generation = cache.generation();
+        cache.put("token", "username");
+        cache.clear();
+        cache.put("stale", "username", generation);
+
+        // Check that a token read before a clear isn't cached after it
+        assertNull(cache.get("token"));
+        assertNull(cache.get("stale"));
+        cache.put("fresh", "username", cache.generation());
+        assertEquals("username", cache.get("fresh"));
+    }
+}
@@ -1,10 +1,14 @@
 package com.teranpeterson.server.dao;
 
+import com.teranpeterson.server.cache.TokenCache;
 import com.teranpeterson.server.model.AuthToken;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 
 import static org.junit.Assert.*;
 
@@ -16,8 +20,27 @@ public class AuthTokenDAOTest {
     public void setUp() throws Exception {
         token = new AuthToken("username", "token");
         db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
+    }
+
+    @After
+    public void tearDown() {
+        AuthTokenDAO.configure(AuthTokenDAO.DEFAULT_SESSION_TIMEOUT);
+    }
+
+    /**
+     * Makes a token look like it was last used the given number of milliseconds ago
+     */
+    private void age(String token, long millis) throws Exception {
+        Connection conn = db.openConnection();
+        try (PreparedStatement stmt = conn.prepareStatement(AuthTokenDAO.TOUCH)) {
+            stmt.setLong(1, System.currentTimeMillis() - millis);
+            stmt.setString(2, token);
+            stmt.executeUpdate();
+        }
+        db.closeConnection(true);
+        TokenCache.getInstance().invalidate(token);
     }
 
     @Test
@@ -100,4 +123,110 @@ public class AuthTokenDAOTest {
         // Check that invalid login didn't work
         assertNotEquals("username", success);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void validateCachedPass() throws Exception {
+        Connection conn = db.openConnection();
+        AuthTokenDAO dao = new AuthTokenDAO(conn);
+        dao.insert(token);
+        long hits = TokenCache.getInstance().getHits();
+        String first = dao.validate("token");
+        String second = dao.validate("token");
+        db.closeConnection(true);
+
+        // Check that the second lookup is answered from the cache
+        assertEquals("username", first);
+        assertEquals("username", second);
+        assertEquals(hits + 1, TokenCache.getInstance().getHits());
+
+        // Check that clearing the database drops cached tokens
+        db.clear();
+        conn = db.openConnection();
+        assertNull(new AuthTokenDAO(conn).validate("token"));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void validateExpiredFail() throws Exception {
+        Connection conn = db.openConnection();
+        new AuthTokenDAO(conn).insert(token);
+        db.closeConnection(true);
+        age("token", AuthTokenDAO.DEFAULT_SESSION_TIMEOUT + 1000);
+
+        // Check that a token unused for longer than the session timeout is rejected
+        conn = db.openConnection();
+        assertNull(new AuthTokenDAO(conn).validate("token"));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void validateSlidingPass() throws Exception {
+        Connection conn = db.openConnection();
+        new AuthTokenDAO(conn).insert(token);
+        db.closeConnection(true);
+        age("token", AuthTokenDAO.DEFAULT_SESSION_TIMEOUT - 1000);
+
+        // Check that using a token moves its expiry forward
+        conn = db.openConnection();
+        assertEquals("username", new AuthTokenDAO(conn).validate("token"));
+        db.closeConnection(true);
+        TokenCache.getInstance().invalidate("token");
+        AuthTokenDAO.configure(AuthTokenDAO.DEFAULT_SESSION_TIMEOUT / 2);
+
+        conn = db.openConnection();
+        assertEquals("username", new AuthTokenDAO(conn).validate("token"));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void validateTouchDeferredPass() throws Exception {
+        Connection conn = db.openConnection();
+        new AuthTokenDAO(conn).insert(token);
+        db.closeConnection(true);
+        age("token", AuthTokenDAO.TOUCH_INTERVAL + 1000);
+        long used = System.currentTimeMillis();
+
+        // Check that validating doesn't hold the write lock while the connection is still out
+        conn = db.openConnection();
+        assertEquals("username", new AuthTokenDAO(conn).validate("token"));
+        Database writer = new Database();
+        writer.openWriteConnection();
+        writer.closeConnection(true);
+        db.closeConnection(true);
+
+        // Check that the use time was written once the connection was released
+        conn = db.openConnection();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT `last_used` FROM `AuthTokens` WHERE `token` = ?")) {
+            stmt.setString(1, "token");
+            try (ResultSet result = stmt.executeQuery()) {
+                assertTrue(result.next());
+                assertTrue(result.getLong("last_used") >= used);
+            }
+        }
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void purgeExpiredPass() throws Exception {
+        Connection conn = db.openConnection();
+        AuthTokenDAO dao = new AuthTokenDAO(conn);
+        dao.insert(token);
+        dao.insert(new AuthToken("username", "old1"));
+        dao.insert(new AuthToken("username", "old2"));
+        dao.insert(new AuthToken("username", "old3"));
+        db.closeConnection(true);
+        age("old1", AuthTokenDAO.DEFAULT_SESSION_TIMEOUT + 1000);
+        age("old2", AuthTokenDAO.DEFAULT_SESSION_TIMEOUT + 1000);
+        age("old3", AuthTokenDAO.DEFAULT_SESSION_TIMEOUT + 1000);
+
+        // Check that expired tokens are deleted in batches and live tokens are kept
+        long cutoff = System.currentTimeMillis() - AuthTokenDAO.DEFAULT_SESSION_TIMEOUT;
+        conn = db.openConnection();
+        dao = new AuthTokenDAO(conn);
+        assertEquals(2, dao.purgeExpired(cutoff, 2));
+        assertEquals(1, dao.purgeExpired(cutoff, 2));
+        assertEquals(0, dao.purgeExpired(cutoff, 2));
+        assertEquals("username", dao.validate("token"));
+        db.closeConnection(true);
+    }
+}
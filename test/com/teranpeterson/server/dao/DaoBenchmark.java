@@ -0,0 +1,86 @@
+package com.teranpeterson.server.dao;
+
+import com.teranpeterson.server.Bench;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures single inserts, lookups by id and listing one user's tree with the Persons and Events tables holding
+ * different numbers of rows. Each table size gets a fresh database in a temporary file, filled with trees of
+ * {@link #TREE_SIZE} persons and events. Run with {@code java DaoBenchmark [--options of Bench]}.
+ */
+public class DaoBenchmark {
+    private static final int[] TABLE_SIZES = {1000, 10000, 100000};
+    private static final int TREE_SIZE = 100;
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.parse(args);
+        run(bench);
+        bench.finish();
+    }
+
+    public static void run(Bench bench) throws Exception {
+        if (!bench.enabled("dao")) return;
+        for (int rows : TABLE_SIZES) {
+            Path file = Files.createTempFile("bench", ".db");
+            ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + file, 1, 60000, 1000);
+            try {
+                run(bench, pool, rows);
+            } finally {
+                pool.close();
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+            }
+        }
+    }
+
+    private static void run(Bench bench, ConnectionPool pool, int rows) throws Exception {
+        Database db = new Database(pool);
+        db.createTables();
+
+        // Fill the tables with one tree per user
+        Connection conn = db.openConnection();
+        List<Person> persons = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < rows; ++i) {
+            String user = "user" + i / TREE_SIZE;
+            persons.add(new Person("person" + i, user, "first", "last", i % 2 == 0 ? "m" : "f"));
+            events.add(new Event("event" + i, user, "person" + i, 40.75, -111.88, "United States", "Provo", "birth",
+                    1900 + i % 100));
+        }
+        new PersonDAO(conn).insertAll(persons);
+        new EventDAO(conn).insertAll(events);
+        db.closeConnection(true);
+
+        // Everything is measured in one transaction that is rolled back, so inserts don't grow the tables
+        conn = db.openConnection();
+        PersonDAO personDAO = new PersonDAO(conn);
+        EventDAO eventDAO = new EventDAO(conn);
+        String params = "rows=" + rows;
+        int[] next = {0};
+        bench.run("dao", "person.insert", params, () -> {
+            personDAO.insert(new Person("new" + next[0]++, "new", "first", "last", "f"));
+            return null;
+        });
+        bench.run("dao", "event.insert", params, () -> {
+            eventDAO.insert(new Event("new" + next[0]++, "new", "new", 1, 1, "country", "city", "birth", 2000));
+            return null;
+        });
+        bench.run("dao", "person.find", params, () -> personDAO.find("person" + ThreadLocalRandom.current().nextInt(rows)));
+        bench.run("dao", "event.find", params, () -> eventDAO.find("event" + ThreadLocalRandom.current().nextInt(rows)));
+        int users = rows / TREE_SIZE;
+        bench.run("dao", "person.list", params,
+                () -> personDAO.findRelatives("user" + ThreadLocalRandom.current().nextInt(users)));
+        bench.run("dao", "event.list", params,
+                () -> eventDAO.personEvents("user" + ThreadLocalRandom.current().nextInt(users)));
+        db.closeConnection(false);
+    }
+}
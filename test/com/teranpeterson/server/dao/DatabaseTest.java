@@ -0,0 +1,156 @@
+package com.teranpeterson.server.dao;
+
+import com.teranpeterson.server.model.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.Assert.*;
+
+public class DatabaseTest {
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ConnectionPool("jdbc:sqlite::memory:", 2, 60000, 100);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void borrowPass() throws Exception {
+        Database db = new Database(pool);
+        Connection first = db.openConnection();
+        db.closeConnection(true);
+        Connection second = db.openConnection();
+        db.closeConnection(true);
+
+        // Check that the connection was reused instead of reopened
+        assertSame(first, second);
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void borrowFail() throws Exception {
+        pool.borrow();
+        pool.borrow();
+
+        // Check that the pool doesn't grow past its maximum size
+        boolean success = true;
+        try {
+            pool.borrow();
+        } catch (DAOException e) {
+            success = false;
+        }
+        assertFalse(success);
+        assertEquals(2, pool.getSize());
+        assertEquals(1, pool.getTimeoutCount());
+    }
+
+    @Test
+    public void validatePass() throws Exception {
+        Connection conn = pool.borrow();
+        pool.release(conn);
+        conn.close();
+
+        // Check that a broken idle connection is replaced
+        Connection replacement = pool.borrow();
+        assertNotSame(conn, replacement);
+        assertFalse(replacement.isClosed());
+        assertEquals(1, pool.getInvalidCount());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void evictIdlePass() throws Exception {
+        pool.close();
+        pool = new ConnectionPool("jdbc:sqlite::memory:", 2, 0, 100);
+        Connection conn = pool.borrow();
+        pool.release(conn);
+        Thread.sleep(5);
+        pool.evictIdle();
+
+        // Check that idle connections are closed after the timeout
+        assertTrue(conn.isClosed());
+        assertEquals(0, pool.getSize());
+        assertEquals(1, pool.getEvictedCount());
+    }
+
+    @Test
+    public void closeConnectionTwice() throws Exception {
+        Database db = new Database(pool);
+        db.openConnection();
+        db.closeConnection(true);
+        db.closeConnection(false);
+
+        // Check that the connection was only returned once
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void createTablesPass() throws Exception {
+        Database db = new Database(pool);
+        db.createTables();
+
+        // Check that a new database is migrated to the latest version
+        Connection conn = db.openConnection();
+        assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.version(conn));
+        assertEquals(0, SchemaMigrator.migrate(conn));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void clearPass() throws Exception {
+        pool.close();
+        pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 60000, 100);
+        Database db = new Database(pool);
+        db.createTables();
+        Connection conn = db.openConnection();
+        new UserDAO(conn).insert(new User("sam", "irock", "sam@gmail.com", "sam", "smith", "m", "1"));
+        db.closeConnection(true);
+        db.clear();
+
+        // Check that clear removes data but keeps the schema
+        conn = db.openConnection();
+        assertNull(new UserDAO(conn).find("sam"));
+        assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.version(conn));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void queryPlanPass() throws Exception {
+        Database db = new Database(pool);
+        db.createTables();
+        Connection conn = db.openConnection();
+        String[] queries = {PersonDAO.FIND, PersonDAO.FIND_RELATIVES, PersonDAO.FIND_RELATIVES_PAGE,
+                PersonDAO.DELETE_RELATIVES, EventDAO.FIND, EventDAO.FIND_EVENTS, EventDAO.FIND_EVENTS_PAGE,
+                EventDAO.DELETE_EVENTS, UserDAO.FIND, UserDAO.AUTHENTICATE, AuthTokenDAO.VALIDATE, AuthTokenDAO.TOUCH,
+                AuthTokenDAO.PURGE, PersonDAO.FIND_RELATIVES_SINCE, EventDAO.FIND_EVENTS_SINCE, ChangeLogDAO.COMPACT,
+                ChangeLogDAO.USER_FLOOR, ChangeLogDAO.GLOBAL_FLOOR};
+
+        // Check that every lookup uses an index instead of scanning the whole table or sorting
+        for (String sql : queries) {
+            try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+                for (int i = 1; i <= stmt.getParameterMetaData().getParameterCount(); ++i) {
+                    stmt.setString(i, "x");
+                }
+                try (ResultSet plan = stmt.executeQuery()) {
+                    while (plan.next()) {
+                        String detail = plan.getString("detail");
+                        assertTrue(sql + " -> " + detail, detail.contains("INDEX") || detail.contains("PRIMARY KEY"));
+                    }
+                }
+            }
+        }
+        db.closeConnection(true);
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -17,8 +19,8 @@ public class EventDAOTest {
     public void setUp() throws Exception {
         event = new Event("12345", "johng", "john", 1, 1, "country", "city", "type", 2019);
         db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
     }
 
     @Test
@@ -63,6 +65,46 @@ public class EventDAOTest {
         db.closeConnection(true);
     }
 
+    @Test
+    public void insertAllPass() throws Exception {
+        List<Event> insertTest = null;
+        try {
+            Connection conn = db.openConnection();
+            EventDAO dao = new EventDAO(conn);
+            dao.insertAll(Arrays.asList(event, new Event("67890", "johng", "john", 2, 2, "country", "city", "type", 2018)));
+            insertTest = dao.personEvents("johng");
+            db.closeConnection(true);
+        } catch (DAOException e) {
+            db.closeConnection(false);
+        }
+
+        // Check that every event in the batch was entered
+        assertNotNull(insertTest);
+        assertEquals(2, insertTest.size());
+        assertTrue(insertTest.contains(event));
+    }
+
+    @Test
+    public void insertAllFail() throws Exception {
+        boolean success = true;
+        try {
+            Connection conn = db.openConnection();
+            EventDAO dao = new EventDAO(conn);
+            dao.insertAll(Arrays.asList(event, event));
+            db.closeConnection(true);
+        } catch (DAOException e) {
+            db.closeConnection(false);
+            success = false;
+        }
+
+        // Check that a duplicate in the batch rolls back the whole batch
+        assertFalse(success);
+        Connection conn = db.openConnection();
+        Event insertTest = new EventDAO(conn).find(event.getEventID());
+        db.closeConnection(true);
+        assertNull(insertTest);
+    }
+
     @Test
     public void findPass() throws Exception {
         Event findTest = null;
@@ -169,4 +211,27 @@ public class EventDAOTest {
         assertNotNull(deleteTest);
         assertEquals("johng", deleteTest.getDescendant());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void forEachEventPagePass() throws Exception {
+        List<Event> records = new ArrayList<>();
+        for (String id : new String[]{"c", "a", "e", "b", "d"}) {
+            records.add(new Event(id, "johng", "john", 1, 1, "country", "city", "type", 2019));
+        }
+        Connection conn = db.openConnection();
+        EventDAO dao = new EventDAO(conn);
+        dao.insertAll(records);
+
+        // Check that pages come back in id order, each starting after the cursor of the one before
+        List<String> ids = new ArrayList<>();
+        String first = dao.forEachEvent("johng", null, 2, x -> ids.add(x.getEventID()));
+        String second = dao.forEachEvent("johng", first, 2, x -> ids.add(x.getEventID()));
+        String third = dao.forEachEvent("johng", second, 2, x -> ids.add(x.getEventID()));
+        db.closeConnection(true);
+
+        assertEquals("b", first);
+        assertEquals("d", second);
+        assertNull(third);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), ids);
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -17,8 +19,8 @@ public class PersonDAOTest {
     public void setUp() throws Exception {
         person = new Person("12345", "johng", "john", "green", "m", "abe", "lincoln", "sue");
         db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
     }
 
     @Test
@@ -63,6 +65,46 @@ public class PersonDAOTest {
         db.closeConnection(true);
     }
 
+    @Test
+    public void insertAllPass() throws Exception {
+        List<Person> insertTest = null;
+        try {
+            Connection conn = db.openConnection();
+            PersonDAO dao = new PersonDAO(conn);
+            dao.insertAll(Arrays.asList(person, new Person("67890", "johng", "jane", "green", "f", "bob", "mary", "john")));
+            insertTest = dao.findRelatives("johng");
+            db.closeConnection(true);
+        } catch (DAOException e) {
+            db.closeConnection(false);
+        }
+
+        // Check that every person in the batch was entered
+        assertNotNull(insertTest);
+        assertEquals(2, insertTest.size());
+        assertTrue(insertTest.contains(person));
+    }
+
+    @Test
+    public void insertAllFail() throws Exception {
+        boolean success = true;
+        try {
+            Connection conn = db.openConnection();
+            PersonDAO dao = new PersonDAO(conn);
+            dao.insertAll(Arrays.asList(person, person));
+            db.closeConnection(true);
+        } catch (DAOException e) {
+            db.closeConnection(false);
+            success = false;
+        }
+
+        // Check that a duplicate in the batch rolls back the whole batch
+        assertFalse(success);
+        Connection conn = db.openConnection();
+        Person insertTest = new PersonDAO(conn).find(person.getPersonID());
+        db.closeConnection(true);
+        assertNull(insertTest);
+    }
+
     @Test
     public void findPass() throws Exception {
         Person findTest = null;
@@ -169,4 +211,27 @@ public class PersonDAOTest {
         assertNotNull(deleteTest);
         assertEquals("johng", person.getDescendant());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void forEachRelativePagePass() throws Exception {
+        List<Person> records = new ArrayList<>();
+        for (String id : new String[]{"c", "a", "e", "b", "d"}) {
+            records.add(new Person(id, "johng", "john", "green", "m", null, null, null));
+        }
+        Connection conn = db.openConnection();
+        PersonDAO dao = new PersonDAO(conn);
+        dao.insertAll(records);
+
+        // Check that pages come back in id order, each starting after the cursor of the one before
+        List<String> ids = new ArrayList<>();
+        String first = dao.forEachRelative("johng", null, 2, x -> ids.add(x.getPersonID()));
+        String second = dao.forEachRelative("johng", first, 2, x -> ids.add(x.getPersonID()));
+        String third = dao.forEachRelative("johng", second, 2, x -> ids.add(x.getPersonID()));
+        db.closeConnection(true);
+
+        assertEquals("b", first);
+        assertEquals("d", second);
+        assertNull(third);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), ids);
+    }
+}
@@ -0,0 +1,122 @@
+package com.teranpeterson.server.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class StatementCacheTest {
+    private static final String SELECT = "SELECT `value` FROM `Numbers` WHERE `value` = ?";
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Connection raw = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = raw.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE `Numbers` (`value` INTEGER NOT NULL)");
+            stmt.executeUpdate("INSERT INTO `Numbers` VALUES (1)");
+            stmt.executeUpdate("INSERT INTO `Numbers` VALUES (2)");
+        }
+        conn = StatementCache.wrap(raw, 2, hits, misses);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void preparePass() throws Exception {
+        // Check that the statement is prepared once and reused after it is closed
+        assertEquals(1, select(1));
+        assertEquals(2, select(2));
+        assertEquals(1, misses.get());
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void prepareInUsePass() throws Exception {
+        try (PreparedStatement outer = conn.prepareStatement(SELECT)) {
+            outer.setInt(1, 1);
+            try (ResultSet rs = outer.executeQuery()) {
+                // Check that preparing the same sql while it is in use gives a separate statement
+                assertEquals(2, select(2));
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+        assertEquals(2, misses.get());
+        assertEquals(1, select(1));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void closeClearsParametersPass() throws Exception {
+        PreparedStatement stmt = conn.prepareStatement(SELECT);
+        stmt.setInt(1, 1);
+        stmt.close();
+
+        // Check that a returned statement reports itself closed and comes back without its old parameters
+        assertTrue(stmt.isClosed());
+        try (PreparedStatement again = conn.prepareStatement(SELECT); ResultSet rs = again.executeQuery()) {
+            assertFalse(again.isClosed());
+            assertFalse(rs.next());
+        }
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void batchNotReusedPass() throws Exception {
+        String insert = "INSERT INTO `Numbers` VALUES (?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            for (int i = 3; i <= 5; ++i) {
+                stmt.setInt(1, i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        // Check that a statement that ran a batch is prepared again for single use
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            stmt.setInt(1, 6);
+            assertEquals(1, stmt.executeUpdate());
+        }
+        assertEquals(0, hits.get());
+        assertEquals(6, select(6));
+    }
+
+    @Test
+    public void evictPass() throws Exception {
+        conn.prepareStatement("SELECT 1").close();
+        conn.prepareStatement("SELECT 2").close();
+        conn.prepareStatement("SELECT 3").close();
+
+        // Check that the least recently used statement was closed to make room
+        conn.prepareStatement("SELECT 1").close();
+        conn.prepareStatement("SELECT 3").close();
+        assertEquals(4, misses.get());
+        assertEquals(1, hits.get());
+    }
+
+    private int select(int value) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT)) {
+            stmt.setInt(1, value);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
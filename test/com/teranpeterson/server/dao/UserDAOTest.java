@@ -16,8 +16,8 @@ public class UserDAOTest {
     public void setUp() throws Exception {
         db = new Database();
         user = new User("sam", "irock", "samsmith@gmail.com", "sam", "smith", "m", "as8sd9fui");
-        db.clear();
         db.createTables();
+        db.clear();
     }
 
     @Test
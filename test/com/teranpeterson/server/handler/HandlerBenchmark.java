@@ -0,0 +1,108 @@
+package com.teranpeterson.server.handler;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.teranpeterson.server.Bench;
+import com.teranpeterson.server.Server;
+import com.teranpeterson.server.ServerConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures full round trips through the http server, from sending the request to reading the last byte of the response,
+ * with the server running in the same process on a free local port. The user {@link #USER} is registered if needed and
+ * filled with 4 generations, in the server's database under resources/database. Run from the project directory with
+ * {@code java HandlerBenchmark [--options of Bench]}.
+ */
+public class HandlerBenchmark {
+    static final String USER = "handlerbenchmark";
+    private static final String PASSWORD = "benchmark";
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.parse(args);
+        run(bench);
+        bench.finish();
+    }
+
+    public static void run(Bench bench) throws Exception {
+        if (!bench.enabled("handler")) return;
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ServerConfig config = new ServerConfig();
+        config.set("port", String.valueOf(port));
+        config.set("bind", "127.0.0.1");
+        Server server = Server.run(config);
+        try {
+            String base = "http://127.0.0.1:" + port;
+            String login = "{\"userName\":\"" + USER + "\",\"password\":\"" + PASSWORD + "\"}";
+            Response response = send("POST", base + "/user/login", null, login);
+            if (response.code != HttpURLConnection.HTTP_OK) {
+                String register = "{\"userName\":\"" + USER + "\",\"password\":\"" + PASSWORD + "\",\"email\":\"bench@"
+                        + "example.com\",\"firstName\":\"Bench\",\"lastName\":\"Mark\",\"gender\":\"f\"}";
+                response = send("POST", base + "/user/register", null, register);
+            }
+            JsonObject user = new JsonParser().parse(response.body).getAsJsonObject();
+            String token = user.get("authToken").getAsString();
+            String personID = user.get("personID").getAsString();
+            send("POST", base + "/fill/" + USER + "/4", null, null);
+            String eventID = new JsonParser().parse(send("GET", base + "/event?limit=1", token, null).body)
+                    .getAsJsonObject().getAsJsonArray("data").get(0).getAsJsonObject().get("eventID").getAsString();
+
+            bench.run("handler", "login", "", () -> send("POST", base + "/user/login", null, login));
+            bench.run("handler", "person", "", () -> send("GET", base + "/person/" + personID, token, null));
+            bench.run("handler", "persons", "", () -> send("GET", base + "/person", token, null));
+            bench.run("handler", "event", "", () -> send("GET", base + "/event/" + eventID, token, null));
+            bench.run("handler", "events", "", () -> send("GET", base + "/event", token, null));
+            bench.run("handler", "events.page", "limit=20", () -> send("GET", base + "/event?limit=20", token, null));
+            bench.run("handler", "sync", "", () -> send("GET", base + "/sync", token, null));
+            bench.run("handler", "webui", "", () -> send("GET", base + "/", null, null));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends a request and reads the whole response
+     */
+    private static Response send(String method, String url, String token, String body) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
+        http.setRequestMethod(method);
+        if (token != null) http.setRequestProperty("Authorization", token);
+        if (body != null) {
+            http.setDoOutput(true);
+            try (OutputStream out = http.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int code = http.getResponseCode();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = code < 400 ? http.getInputStream() : http.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    bytes.write(buffer, 0, n);
+                }
+            }
+        }
+        return new Response(code, bytes.toString("UTF-8"));
+    }
+
+    private static class Response {
+        final int code;
+        final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.teranpeterson.server.helpers;
+
+import com.teranpeterson.server.Bench;
+import com.teranpeterson.server.dao.Database;
+import com.teranpeterson.server.dao.PersonDAO;
+import com.teranpeterson.server.model.Person;
+
+import java.sql.Connection;
+
+/**
+ * Measures generating and storing a family tree of 4, 8 and 12 generations, the whole of a /fill after the user is
+ * found. Uses the server's database under resources/database for the user {@link #USER}, whose tree is replaced on
+ * every call. Run from the project directory with {@code java GeneratorBenchmark [--options of Bench]}.
+ */
+public class GeneratorBenchmark {
+    static final String USER = "benchmark";
+    private static final int[] GENERATIONS = {4, 8, 12};
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.parse(args);
+        run(bench);
+        bench.finish();
+    }
+
+    public static void run(Bench bench) throws Exception {
+        if (!bench.enabled("generator")) return;
+        Database db = new Database();
+        db.createTables();
+        Connection conn = db.openConnection();
+        PersonDAO personDAO = new PersonDAO(conn);
+        if (personDAO.find(USER) == null) personDAO.insert(new Person(USER, USER, "Bench", "Mark", "f"));
+        db.closeConnection(true);
+
+        Generator generator = new Generator();
+        for (int generations : GENERATIONS) {
+            bench.run("generator", "generate", "generations=" + generations, () -> {
+                generator.generate(USER, generations);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.teranpeterson.server.helpers;
+
+import java.util.UUID;
+
+/**
+ * Compares the throughput of {@link IdGenerator} with the random UUID prefixes it replaced. Run with
+ * {@code java IdGeneratorBenchmark [threads] [seconds]}.
+ */
+public class IdGeneratorBenchmark {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        run("uuid", threads, seconds, () -> UUID.randomUUID().toString().substring(0, 6));
+        run("idgenerator", threads, seconds, IdGenerator::next);
+    }
+
+    private static void run(String name, int threads, int seconds, Source source) throws InterruptedException {
+        long[] counts = new long[threads];
+        long end = System.nanoTime() + seconds * 1000000000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                long n = 0;
+                int sink = 0;
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < 1000; ++i) {
+                        sink += source.next().length();
+                    }
+                    n += 1000;
+                }
+                counts[index] = n + (sink == 42 ? 1 : 0);
+            });
+            workers[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; ++t) {
+            workers[t].join();
+            total += counts[t];
+        }
+        System.out.printf("%-12s threads=%d ids/s=%d%n", name, threads, total / seconds);
+    }
+
+    private interface Source {
+        String next();
+    }
+}
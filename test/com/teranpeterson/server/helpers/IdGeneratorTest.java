@@ -0,0 +1,56 @@
+package com.teranpeterson.server.helpers;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class IdGeneratorTest {
+    @Test
+    public void nextPass() {
+        String first = IdGenerator.next();
+        String second = IdGenerator.next();
+
+        // Check that ids are fixed width and sort in the order they were created
+        assertEquals(IdGenerator.LENGTH, first.length());
+        assertEquals(IdGenerator.LENGTH, second.length());
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    public void encodePass() {
+        // Check that the encoding keeps the order of the numbers
+        assertEquals("0000000000000", IdGenerator.encode(0));
+        assertEquals("000000000000z", IdGenerator.encode(35));
+        assertEquals("1y2p0ij32e8e7", IdGenerator.encode(Long.MAX_VALUE));
+        assertTrue(IdGenerator.encode(36).compareTo(IdGenerator.encode(35)) > 0);
+    }
+
+    @Test
+    public void collisionPass() throws Exception {
+        int threads = 4;
+        int perThread = 2500000;
+        long[] ids = new long[threads * perThread];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            int offset = t * perThread;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; ++i) {
+                    ids[offset + i] = IdGenerator.nextLong();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Check that 10 million ids made at the same time on several threads are all different
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; ++i) {
+            assertNotEquals(ids[i - 1], ids[i]);
+        }
+        assertTrue(ids[0] > 0);
+    }
+}
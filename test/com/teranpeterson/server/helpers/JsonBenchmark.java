@@ -0,0 +1,49 @@
+package com.teranpeterson.server.helpers;
+
+import com.google.gson.Gson;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.result.EventResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares serializing an event list with a new reflective Gson per call, as Serializer used to, against the shared
+ * {@link Json#GSON}. Run with {@code java JsonBenchmark [events] [seconds]}.
+ */
+public class JsonBenchmark {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            events.add(new Event("event" + i, "user", "person" + i, 40.75, -110.1167, "United States", "Salt Lake City", "Birth", 1900 + i % 100));
+        }
+        EventResult result = new EventResult(events);
+
+        run("new-gson", seconds, () -> new Gson().toJson(result));
+        run("shared", seconds, () -> Json.GSON.toJson(result));
+    }
+
+    private static void run(String name, int seconds, Source source) {
+        // Warm up for a second before measuring
+        long warm = System.nanoTime() + 1000000000L;
+        while (System.nanoTime() < warm) source.next();
+
+        long n = 0;
+        long bytes = 0;
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        while (System.nanoTime() < end) {
+            bytes += source.next().length();
+            ++n;
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / n;
+        System.out.printf("%-9s ops=%d us/op=%.2f chars/op=%d%n", name, n, micros, bytes / n);
+    }
+
+    private interface Source {
+        String next();
+    }
+}
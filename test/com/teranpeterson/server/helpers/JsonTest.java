@@ -0,0 +1,58 @@
+package com.teranpeterson.server.helpers;
+
+import com.google.gson.Gson;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+import com.teranpeterson.server.model.User;
+import com.teranpeterson.server.result.EventResult;
+import com.teranpeterson.server.result.LoginResult;
+import com.teranpeterson.server.result.PersonResult;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JsonTest {
+    private final Gson reflective = new Gson();
+    private final Person person = new Person("12345", "johng", "john", "green", "m", null, "lincoln", "sue");
+    private final Event event = new Event("67890", "johng", "12345", 40.75, -110.1167, "United States", "Provo <\"&\">", "Birth", 1997);
+    private final User user = new User("johng", "password", "email", "john", "green", "m", "12345");
+
+    @Test
+    public void writePass() {
+        // Check that the adapters write exactly what reflection used to
+        assertEquals(reflective.toJson(person), Json.GSON.toJson(person));
+        assertEquals(reflective.toJson(event), Json.GSON.toJson(event));
+        assertEquals(reflective.toJson(user), Json.GSON.toJson(user));
+        assertEquals(reflective.toJson(new PersonResult(Arrays.asList(person, person))), Json.GSON.toJson(new PersonResult(Arrays.asList(person, person))));
+        assertEquals(reflective.toJson(new PersonResult(person)), Json.GSON.toJson(new PersonResult(person)));
+        assertEquals(reflective.toJson(new EventResult(Arrays.asList(event))), Json.GSON.toJson(new EventResult(Arrays.asList(event))));
+        assertEquals(reflective.toJson(new EventResult("ERROR: Invalid eventID")), Json.GSON.toJson(new EventResult("ERROR: Invalid eventID")));
+        assertEquals(reflective.toJson(new LoginResult("token", "johng", "12345")), Json.GSON.toJson(new LoginResult("token", "johng", "12345")));
+    }
+
+    @Test
+    public void readPass() {
+        // Check that records survive a round trip, including unknown and null fields
+        assertEquals(person, Json.GSON.fromJson(Json.GSON.toJson(person), Person.class));
+        assertEquals(event, Json.GSON.fromJson(Json.GSON.toJson(event), Event.class));
+        assertEquals(user, Json.GSON.fromJson(Json.GSON.toJson(user), User.class));
+        Person read = Json.GSON.fromJson("{\"personID\":\"1\",\"father\":null,\"extra\":{\"a\":[1]}}", Person.class);
+        assertEquals("1", read.getPersonID());
+        assertNull(read.getFather());
+
+        // Check that null numbers are left at 0, as reflection leaves them, instead of failing the read
+        String nulls = Json.GSON.toJson(event).replaceFirst("\"latitude\":[^,]*", "\"latitude\":null")
+                .replaceFirst("\"year\":\\d+", "\"year\":null");
+        Event partial = Json.GSON.fromJson(nulls, Event.class);
+        assertEquals(reflective.toJson(reflective.fromJson(nulls, Event.class)), Json.GSON.toJson(partial));
+        assertEquals(0, partial.getLatitude(), 0);
+        assertEquals(event.getLongitude(), partial.getLongitude(), 0);
+        assertEquals(0, partial.getYear());
+
+        PersonResult result = Json.GSON.fromJson(Json.GSON.toJson(new PersonResult(Arrays.asList(person))), PersonResult.class);
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList(person), result.getData());
+    }
+}
@@ -0,0 +1,60 @@
+package com.teranpeterson.server.helpers;
+
+import com.teranpeterson.server.Bench;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+import com.teranpeterson.server.model.User;
+import com.teranpeterson.server.request.LoadRequest;
+import com.teranpeterson.server.result.EventResult;
+import com.teranpeterson.server.result.PersonResult;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures encoding and decoding the json of /person, /event and /load for a 4 generation tree and a 12 generation tree.
+ * Run with {@code java SerializationBenchmark [--options of Bench]}.
+ */
+public class SerializationBenchmark {
+    private static final int[] SIZES = {31, 8191};
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.parse(args);
+        run(bench);
+        bench.finish();
+    }
+
+    public static void run(Bench bench) throws Exception {
+        if (!bench.enabled("json")) return;
+        for (int size : SIZES) {
+            List<Person> persons = new ArrayList<>();
+            List<Event> events = new ArrayList<>();
+            for (int i = 0; i < size; ++i) {
+                persons.add(new Person("person" + i, "user", "First", "Last", i % 2 == 0 ? "m" : "f", "person" + (2 * i + 1),
+                        "person" + (2 * i + 2), "person" + (i ^ 1)));
+                for (String type : new String[]{"birth", "marriage", "death"}) {
+                    events.add(new Event(type + i, "user", "person" + i, 40.7500, -111.8833, "United States",
+                            "Salt Lake City", type, 1900 + i % 100));
+                }
+            }
+            List<User> users = new ArrayList<>();
+            users.add(new User("user", "password", "user@example.com", "First", "Last", "m", "person0"));
+
+            PersonResult personResult = new PersonResult(persons);
+            EventResult eventResult = new EventResult(events);
+            LoadRequest loadRequest = new LoadRequest(users, persons, events);
+            String personJson = Serializer.serialize(personResult);
+            String eventJson = Serializer.serialize(eventResult);
+            String loadJson = Json.GSON.toJson(loadRequest);
+
+            String params = "persons=" + size;
+            bench.run("json", "person.encode", params, () -> Serializer.serialize(personResult));
+            bench.run("json", "person.decode", params, () -> Json.GSON.fromJson(personJson, PersonResult.class));
+            bench.run("json", "event.encode", params, () -> Serializer.serialize(eventResult));
+            bench.run("json", "event.decode", params, () -> Json.GSON.fromJson(eventJson, EventResult.class));
+            bench.run("json", "load.encode", params, () -> Json.GSON.toJson(loadRequest));
+            bench.run("json", "load.decode", params, () -> Deserializer.loadRequest(new StringReader(loadJson)));
+        }
+    }
+}
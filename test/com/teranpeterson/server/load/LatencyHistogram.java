@@ -0,0 +1,100 @@
+package com.teranpeterson.server.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of latencies in microseconds. Values below 128 are counted exactly, larger values go into one
+ * of 64 buckets per power of two, so any reported value is within 1/64 (about 1.6%) of the recorded one whatever its
+ * size. Recording is a single atomic increment, so virtual users can share a histogram.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB * (64 - SUB_BITS + 1));
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts one latency
+     *
+     * @param micros Latency in microseconds, negative values count as 0
+     */
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(index(micros));
+        total.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Adds every latency counted by another histogram to this one
+     *
+     * @param other Histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); ++i) {
+            long count = other.counts.get(i);
+            if (count != 0) counts.addAndGet(i, count);
+        }
+        total.addAndGet(other.total.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Gets the number of latencies counted
+     *
+     * @return Count
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * Gets the largest latency counted, exactly
+     *
+     * @return Maximum in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the latency that the given fraction of latencies are at or below
+     *
+     * @param fraction Between 0 and 1, e.g. 0.999
+     * @return Latency in microseconds, rounded up to the end of its bucket, or 0 if nothing was counted
+     */
+    public long percentile(double fraction) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); ++i) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Finds the bucket of a value. The first 2 * SUB buckets hold single values, after that each power of two is split
+     * into SUB buckets.
+     */
+    static int index(long value) {
+        if (value < 2 * SUB) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB * shift + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket
+     */
+    static long highest(int index) {
+        if (index < 2 * SUB) return index;
+        int shift = index / SUB - 1;
+        long top = index - (long) SUB * shift;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.teranpeterson.server.load;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void indexPass() {
+        // Check that buckets are contiguous and every value falls inside its own bucket
+        int last = -1;
+        for (long value = 0; value < 1 << 20; ++value) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(index == last || index == last + 1);
+            assertTrue(LatencyHistogram.highest(index) >= value);
+            last = index;
+        }
+        long large = 3600L * 1000 * 1000;
+        assertTrue(LatencyHistogram.highest(LatencyHistogram.index(large)) - large <= large / 64);
+    }
+
+    @Test
+    public void percentilePass() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i);
+        }
+        histogram.record(1000000);
+
+        // Check that percentiles are within the bucket precision and the maximum is exact
+        assertEquals(1001, histogram.getCount());
+        assertEquals(501, histogram.percentile(0.5), 501 / 64.0);
+        assertEquals(991, histogram.percentile(0.99), 991 / 64.0);
+        assertEquals(1000000, histogram.percentile(1.0));
+        assertEquals(1000000, histogram.getMax());
+    }
+
+    @Test
+    public void addPass() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(20);
+        second.record(-5);
+        first.add(second);
+
+        // Check that merged histograms keep every count and the larger maximum
+        assertEquals(3, first.getCount());
+        assertEquals(0, first.percentile(0.1));
+        assertEquals(20, first.getMax());
+    }
+
+    @Test
+    public void percentileEmptyPass() {
+        // Check that an empty histogram reports zeros instead of failing
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,414 @@
+package com.teranpeterson.server.load;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.teranpeterson.server.Server;
+import com.teranpeterson.server.ServerConfig;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a running server with many concurrent virtual users, each sending a random mix of requests, and reports the
+ * throughput, errors and latency percentiles of every endpoint. Without --url a server is started in this process on a
+ * free port, using the database under resources/database, so run from the project directory.
+ * <p>
+ * With --rate the generator runs an open model: every virtual user has a fixed schedule of send times, and latency is
+ * measured from when a request was due rather than when it was sent. A stalled server then shows up as the wait of
+ * every request it held up, not just the one it stalled on (coordinated omission). The latency from the actual send is
+ * reported alongside as service time. Without --rate each user sends as fast as it gets answers and the two are the same.
+ * <p>
+ * Virtual users are named from the seed and log in as the same synthetic users on every run with that seed, registering
+ * them the first time. The mix of requests each user sends comes from a random generator seeded the same way, so two
+ * runs with the same options send the same requests in the same order. Only the names made up for /user/register
+ * differ between runs, since a name can be registered once.
+ * <p>
+ * Options: --url=http://host:port --users=32 --rate=0 (requests/s, 0 for closed model) --duration=30 --warmup=5
+ * (seconds) --seed=1 --generations=4 --mix=login:10,persons:35,... --out=file (json lines)
+ */
+public class LoadGenerator {
+    /**
+     * Requests a virtual user can send
+     */
+    enum Endpoint {
+        REGISTER, LOGIN, FILL, PERSON, PERSONS, EVENT, EVENTS;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final String PASSWORD = "loadtest";
+
+    private String url;
+    private int users = 32;
+    private double rate;
+    private int duration = 30;
+    private int warmup = 5;
+    private long seed = 1;
+    private int generations = 4;
+    private final Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+    private String out;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10)).build();
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong registered = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+
+        Server server = null;
+        if (generator.url == null) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            ServerConfig config = new ServerConfig();
+            config.set("port", String.valueOf(port));
+            config.set("bind", "127.0.0.1");
+            server = Server.run(config);
+            generator.url = "http://127.0.0.1:" + port;
+        }
+        try {
+            generator.run();
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+
+    private void parse(String[] args) {
+        mix.put(Endpoint.REGISTER, 1);
+        mix.put(Endpoint.LOGIN, 10);
+        mix.put(Endpoint.FILL, 2);
+        mix.put(Endpoint.PERSON, 10);
+        mix.put(Endpoint.PERSONS, 34);
+        mix.put(Endpoint.EVENT, 10);
+        mix.put(Endpoint.EVENTS, 33);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Bad option " + arg);
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "url":
+                    url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "users":
+                    users = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "duration":
+                    duration = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "generations":
+                    generations = Integer.parseInt(value);
+                    break;
+                case "mix":
+                    mix.clear();
+                    for (String part : value.split(",")) {
+                        String[] weight = part.split(":");
+                        mix.put(Endpoint.valueOf(weight[0].toUpperCase()), Integer.parseInt(weight[1]));
+                    }
+                    break;
+                case "out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (users < 1 || duration < 1 || warmup < 0 || rate < 0) throw new IllegalArgumentException("Bad options");
+    }
+
+    private void run() throws Exception {
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new Stats());
+        }
+
+        // Log in every synthetic user before the clock starts
+        System.err.println("Setting up " + users + " users against " + url);
+        List<User> vus = new ArrayList<>();
+        for (int i = 0; i < users; ++i) {
+            vus.add(setUp(i));
+        }
+
+        long start = System.nanoTime() + 100_000_000L; // Everyone starts together
+        long measureFrom = start + warmup * 1_000_000_000L;
+        long end = measureFrom + duration * 1_000_000_000L;
+        long interval = rate > 0 ? (long) (users * 1e9 / rate) : 0;
+        CountDownLatch done = new CountDownLatch(users);
+        for (User vu : vus) {
+            Thread thread = new Thread(() -> {
+                try {
+                    vu.drive(start, interval, measureFrom, end);
+                } finally {
+                    done.countDown();
+                }
+            }, "vu-" + vu.index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        report();
+    }
+
+    /**
+     * Logs in a synthetic user, registering and filling it the first time the seed is used
+     */
+    private User setUp(int index) throws IOException, InterruptedException {
+        String userName = "load" + seed + "u" + index;
+        Response response = send("POST", "/user/login", null, login(userName));
+        if (response.code != 200) {
+            response = send("POST", "/user/register", null, register(userName));
+            if (response.code != 200) throw new IOException("Unable to register " + userName + ": " + response.body);
+        }
+        JsonObject login = new JsonParser().parse(response.body).getAsJsonObject();
+        String token = login.get("authToken").getAsString();
+        String personID = login.get("personID").getAsString();
+        send("POST", "/fill/" + userName + "/" + generations, null, null);
+
+        return new User(index, userName, token, personID, firstEvent(token), new Random(seed * 1_000_003L + index));
+    }
+
+    /**
+     * Finds the id of one of a user's events
+     */
+    private String firstEvent(String token) throws IOException, InterruptedException {
+        JsonArray events = new JsonParser().parse(send("GET", "/event?limit=1", token, null).body).getAsJsonObject()
+                .getAsJsonArray("data");
+        return events.size() > 0 ? events.get(0).getAsJsonObject().get("eventID").getAsString() : "none";
+    }
+
+    /**
+     * Picks the next request from the mix
+     */
+    private Endpoint pick(Random random) {
+        int total = 0;
+        for (int weight : mix.values()) {
+            total += weight;
+        }
+        int n = random.nextInt(total);
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            n -= entry.getValue();
+            if (n < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private Response send(String method, String path, String token, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + path)).timeout(Duration.ofSeconds(60));
+        if (token != null) request.header("Authorization", token);
+        request.method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body));
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return new Response(response.statusCode(), response.body());
+    }
+
+    private static String login(String userName) {
+        return "{\"userName\":\"" + userName + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private static String register(String userName) {
+        return "{\"userName\":\"" + userName + "\",\"password\":\"" + PASSWORD + "\",\"email\":\"" + userName
+                + "@example.com\",\"firstName\":\"Load\",\"lastName\":\"Test\",\"gender\":\"f\"}";
+    }
+
+    /**
+     * Prints a table of every endpoint and writes the same numbers as json lines if asked to
+     */
+    private void report() throws IOException {
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        PrintStream json = out == null ? null : new PrintStream(Files.newOutputStream(Paths.get(out)), true, "UTF-8");
+        System.err.printf("%n%-9s %8s %7s %9s %9s %9s %9s %9s %9s %12s%n", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+
+        Stats all = new Stats();
+        for (Map.Entry<Endpoint, Stats> entry : stats.entrySet()) {
+            all.add(entry.getValue());
+            if (entry.getValue().latency.getCount() > 0) report(entry.getKey().label(), entry.getValue(), gson, json);
+        }
+        report("all", all, gson, json);
+        if (json != null) json.close();
+    }
+
+    private void report(String name, Stats stats, Gson gson, PrintStream json) {
+        LatencyHistogram latency = stats.latency;
+        double throughput = latency.getCount() / (double) duration;
+        System.err.printf("%-9s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n", name, latency.getCount(),
+                stats.errors.get(), throughput, latency.percentile(0.5) / 1000.0, latency.percentile(0.9) / 1000.0,
+                latency.percentile(0.99) / 1000.0, latency.percentile(0.999) / 1000.0, latency.getMax() / 1000.0,
+                stats.service.percentile(0.99) / 1000.0);
+        if (json == null) return;
+
+        JsonObject result = new JsonObject();
+        result.addProperty("endpoint", name);
+        result.addProperty("users", users);
+        result.addProperty("rate", rate);
+        result.addProperty("duration_s", duration);
+        result.addProperty("seed", seed);
+        result.addProperty("requests", latency.getCount());
+        result.addProperty("errors", stats.errors.get());
+        result.addProperty("req_per_s", Math.round(throughput * 100) / 100.0);
+        result.addProperty("p50_us", latency.percentile(0.5));
+        result.addProperty("p90_us", latency.percentile(0.9));
+        result.addProperty("p99_us", latency.percentile(0.99));
+        result.addProperty("p999_us", latency.percentile(0.999));
+        result.addProperty("max_us", latency.getMax());
+        result.addProperty("service_p50_us", stats.service.percentile(0.5));
+        result.addProperty("service_p99_us", stats.service.percentile(0.99));
+        result.addProperty("service_p999_us", stats.service.percentile(0.999));
+        json.println(gson.toJson(result));
+    }
+
+    /**
+     * Counts for one endpoint. Latency is measured from when the request was due, service time from when it was sent.
+     */
+    private static class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+
+        void add(Stats other) {
+            latency.add(other.latency);
+            service.add(other.service);
+            errors.addAndGet(other.errors.get());
+        }
+    }
+
+    private static class Response {
+        final int code;
+        final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Virtual user sending requests as one of the synthetic users
+     */
+    private class User {
+        final int index;
+        final String userName;
+        final String personID;
+        final Random random;
+        String eventID;
+        String token;
+
+        User(int index, String userName, String token, String personID, String eventID, Random random) {
+            this.index = index;
+            this.userName = userName;
+            this.token = token;
+            this.personID = personID;
+            this.eventID = eventID;
+            this.random = random;
+        }
+
+        /**
+         * Sends requests until the end, on schedule if there is an interval. Users are spread evenly over the first
+         * interval so they don't all send at once.
+         */
+        void drive(long start, long interval, long measureFrom, long end) {
+            long due = start + (interval == 0 ? 0 : interval * index / users);
+            while (due < end) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                Endpoint endpoint = pick(random);
+                long sent = System.nanoTime();
+                boolean ok = send(endpoint);
+                long finished = System.nanoTime();
+
+                if (sent >= measureFrom) {
+                    Stats stats = LoadGenerator.this.stats.get(endpoint);
+                    stats.latency.record((finished - due) / 1000);
+                    stats.service.record((finished - sent) / 1000);
+                    if (!ok) stats.errors.incrementAndGet();
+                }
+                if (endpoint == Endpoint.FILL && ok) refreshEvent(); // Filling replaces every event id
+                due = interval == 0 ? finished : due + interval;
+            }
+        }
+
+        private void refreshEvent() {
+            try {
+                eventID = firstEvent(token);
+            } catch (IOException e) {
+                // Keep the old id, lookups of it count as errors until the next fill
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean send(Endpoint endpoint) {
+            try {
+                Response response;
+                switch (endpoint) {
+                    case REGISTER:
+                        String name = "load" + seed + "r" + run + "n" + registered.incrementAndGet();
+                        response = LoadGenerator.this.send("POST", "/user/register", null, register(name));
+                        break;
+                    case LOGIN:
+                        response = LoadGenerator.this.send("POST", "/user/login", null, login(userName));
+                        if (response.code == 200) {
+                            token = new JsonParser().parse(response.body).getAsJsonObject().get("authToken")
+                                    .getAsString();
+                        }
+                        break;
+                    case FILL:
+                        response = LoadGenerator.this.send("POST", "/fill/" + userName + "/" + generations, null, null);
+                        break;
+                    case PERSON:
+                        response = LoadGenerator.this.send("GET", "/person/" + personID, token, null);
+                        break;
+                    case PERSONS:
+                        response = LoadGenerator.this.send("GET", "/person", token, null);
+                        break;
+                    case EVENT:
+                        response = LoadGenerator.this.send("GET", "/event/" + eventID, token, null);
+                        break;
+                    default:
+                        response = LoadGenerator.this.send("GET", "/event", token, null);
+                        break;
+                }
+                return response.code == 200;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
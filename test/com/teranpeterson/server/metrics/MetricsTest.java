@@ -0,0 +1,98 @@
+package com.teranpeterson.server.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics();
+    }
+
+    @Test
+    public void histogramPass() {
+        Histogram histogram = new Histogram(new double[]{1, 2, 5});
+        histogram.observe(0.5);
+        histogram.observe(1);
+        histogram.observe(3);
+        histogram.observe(100);
+
+        // Check that a value equal to a bound falls in that bound's bucket and counts are cumulative
+        assertArrayEquals(new long[]{2, 2, 3, 4}, histogram.getCumulativeCounts());
+        assertEquals(4, histogram.getCount());
+        assertEquals(104.5, histogram.getSum(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramFail() {
+        // Check that bounds out of order are turned away
+        new Histogram(new double[]{1, 1});
+    }
+
+    @Test
+    public void exportPass() {
+        metrics.counter("requests_total", "Requests", "path", "/person", "code", "200").add(3);
+        metrics.counter("requests_total", "Requests", "code", "404", "path", "/person").increment();
+        metrics.gauge("pool_size", "Pool size", () -> 2.5);
+        Histogram latency = metrics.histogram("latency_seconds", "Latency", new double[]{0.0005, 1}, "path", "/");
+        latency.observe(0.0001);
+        latency.observe(2);
+
+        // Check that the same labels in another order are the same series
+        assertSame(metrics.counter("requests_total", "Requests", "code", "200", "path", "/person"),
+                metrics.counter("requests_total", "Requests", "path", "/person", "code", "200"));
+
+        // Check the text format, one HELP and TYPE per family
+        String expected = "# HELP requests_total Requests\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{code=\"200\",path=\"/person\"} 3\n"
+                + "requests_total{code=\"404\",path=\"/person\"} 1\n"
+                + "# HELP pool_size Pool size\n"
+                + "# TYPE pool_size gauge\n"
+                + "pool_size 2.5\n"
+                + "# HELP latency_seconds Latency\n"
+                + "# TYPE latency_seconds histogram\n"
+                + "latency_seconds_bucket{path=\"/\",le=\"0.0005\"} 1\n"
+                + "latency_seconds_bucket{path=\"/\",le=\"1\"} 1\n"
+                + "latency_seconds_bucket{path=\"/\",le=\"+Inf\"} 2\n"
+                + "latency_seconds_sum{path=\"/\"} 2.0001\n"
+                + "latency_seconds_count{path=\"/\"} 2\n";
+        assertEquals(expected, metrics.export());
+    }
+
+    @Test
+    public void supplierPass() {
+        metrics.counter("purged_total", "Purged", () -> 1);
+        metrics.counter("purged_total", "Purged", () -> 7);
+
+        // Check that registering a supplier again replaces the old one
+        assertTrue(metrics.export().endsWith("\npurged_total 7\n"));
+    }
+
+    @Test
+    public void escapePass() {
+        metrics.counter("odd_total", "Line\nbreak \\ here", "path", "a\"b\\c\nd").increment();
+
+        // Check that help text and label values are escaped
+        String export = metrics.export();
+        assertTrue(export.contains("# HELP odd_total Line\\nbreak \\\\ here\n"));
+        assertTrue(export.contains("odd_total{path=\"a\\\"b\\\\c\\nd\"} 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeFail() {
+        // Check that a name can't be used for two kinds of metric
+        metrics.counter("mixed", "Mixed");
+        metrics.gauge("mixed", "Mixed", () -> 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void labelsFail() {
+        // Check that a label without a value is turned away
+        metrics.counter("requests_total", "Requests", "path");
+    }
+}
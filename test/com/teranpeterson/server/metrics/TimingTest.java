@@ -0,0 +1,76 @@
+package com.teranpeterson.server.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("try")
+public class TimingTest {
+    @After
+    public void tearDown() {
+        Timing.setEnabled(false);
+    }
+
+    @Test
+    public void stagePass() throws InterruptedException {
+        Timing.setEnabled(true);
+        Timing timing = Timing.begin();
+        assertNotNull(timing);
+        try (Timing.Stage stage = Timing.stage("auth")) {
+            Thread.sleep(2);
+        }
+        try (Timing.Stage stage = Timing.stage("db-open")) {
+            Thread.sleep(1);
+        }
+        try (Timing.Stage stage = Timing.stage("auth")) {
+            Thread.sleep(2);
+        }
+        timing.end();
+
+        // Check that repeated stages add up and keep the order they first finished in
+        assertEquals(2, timing.getSize());
+        assertEquals("auth", timing.getName(0));
+        assertEquals("db-open", timing.getName(1));
+        assertTrue(timing.getNanos(0) >= 4000000);
+        assertTrue(timing.getElapsed() >= timing.getNanos(0) + timing.getNanos(1));
+        assertTrue(timing.header().matches("auth;dur=[0-9.]+, db-open;dur=[0-9.]+, total;dur=[0-9.]+"));
+    }
+
+    @Test
+    public void endPass() {
+        Timing.setEnabled(true);
+        Timing timing = Timing.begin();
+        timing.end();
+        Timing.stage("auth").close();
+
+        // Check that stages after the request ended aren't added to it
+        assertEquals(0, timing.getSize());
+        assertTrue(timing.header().startsWith("total;dur="));
+    }
+
+    @Test
+    public void disabledPass() {
+        // Check that nothing is timed while timing is off, even on a thread that was timing a request
+        Timing.setEnabled(true);
+        Timing timing = Timing.begin();
+        Timing.setEnabled(false);
+        Timing.stage("auth").close();
+        timing.end();
+        assertEquals(0, timing.getSize());
+        assertNull(Timing.begin());
+    }
+
+    @Test
+    public void limitPass() {
+        Timing.setEnabled(true);
+        Timing timing = Timing.begin();
+        for (int i = 0; i < Timing.MAX_STAGES + 4; ++i) {
+            Timing.stage("stage" + i).close();
+        }
+        timing.end();
+
+        // Check that stages past the limit are dropped instead of failing the request
+        assertEquals(Timing.MAX_STAGES, timing.getSize());
+    }
+}
@@ -17,8 +17,8 @@ public class ClearServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
 
         AuthToken token = new AuthToken("username", "token");
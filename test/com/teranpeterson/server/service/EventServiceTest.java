@@ -11,6 +11,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -18,8 +20,8 @@ public class EventServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
         AuthToken token = new AuthToken("username", "token");
         AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
@@ -49,4 +51,51 @@ public class EventServiceTest {
         assertNull(result.getEvent());
         assertFalse(result.isSuccess());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void eventsPass() {
+        Collector<Event> sink = new Collector<>();
+        EventResult result = new EventService().events(new EventRequest("token"), sink);
+
+        // Check that every event was streamed to the sink
+        assertTrue(result.isSuccess());
+        assertTrue(sink.ended);
+        assertEquals(1, sink.records.size());
+        assertEquals("12345", sink.records.get(0).getEventID());
+    }
+
+    @Test
+    public void eventsFail() {
+        Collector<Event> sink = new Collector<>();
+        EventResult result = new EventService().events(new EventRequest("nottoken"), sink);
+
+        // Check that nothing is streamed without a valid auth token
+        assertFalse(result.isSuccess());
+        assertFalse(sink.started);
+        assertTrue(sink.records.isEmpty());
+    }
+
+    /**
+     * Keeps streamed records in a list
+     */
+    private static class Collector<T> implements ListSink<T> {
+        boolean started;
+        boolean ended;
+        List<T> records = new ArrayList<>();
+
+        @Override
+        public void begin() {
+            started = true;
+        }
+
+        @Override
+        public void write(T record) {
+            records.add(record);
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+}
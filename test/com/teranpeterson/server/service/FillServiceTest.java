@@ -11,6 +11,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -18,8 +23,8 @@ public class FillServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
         UserDAO userDAO = new UserDAO(conn);
         User user = new User("username", "password", "email", "first", "last", "m", "12345");
@@ -40,6 +45,43 @@ public class FillServiceTest {
         assertTrue(result.isSuccess());
     }
 
+    @Test
+    public void fillDeepPass() throws Exception {
+        FillRequest request = new FillRequest("username", 9);
+        FillResult result = new FillService().fill(request);
+
+        // Check that a tree big enough to be built in parallel has every person and event
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertEquals("Successfully added 1023 persons and 4090 events to the database.", result.getMessage());
+
+        // Check that the trees built on separate tasks are linked together
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        List<Person> persons = new PersonDAO(conn).findRelatives("username");
+        db.closeConnection(true);
+        Map<String, Person> byID = new HashMap<>();
+        for (Person person : persons) {
+            byID.put(person.getPersonID(), person);
+        }
+        int children = 0;
+        for (Person person : persons) {
+            if (person.getFather() == null) continue;
+            assertEquals("m", byID.get(person.getFather()).getGender());
+            assertEquals("f", byID.get(person.getMother()).getGender());
+            assertEquals(person.getMother(), byID.get(person.getFather()).getSpouse());
+            ++children;
+        }
+        assertEquals(1023, persons.size());
+        assertEquals(511, children);
+
+        // Check that none of the ids collided
+        Set<String> ids = new HashSet<>();
+        for (Person person : persons) {
+            ids.add(person.getPersonID());
+        }
+        assertEquals(1023, ids.size());
+    }
+
     @Test
     public void fillFail() {
         FillRequest request = new FillRequest("not");
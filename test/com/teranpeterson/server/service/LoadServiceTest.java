@@ -1,7 +1,9 @@
 package com.teranpeterson.server.service;
 
+import com.google.gson.Gson;
 import com.teranpeterson.server.dao.Database;
 import com.teranpeterson.server.dao.EventDAO;
+import com.teranpeterson.server.dao.PersonDAO;
 import com.teranpeterson.server.dao.UserDAO;
 import com.teranpeterson.server.model.Event;
 import com.teranpeterson.server.model.Person;
@@ -11,6 +13,7 @@ import com.teranpeterson.server.result.LoadResult;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringReader;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +67,7 @@ public class LoadServiceTest {
 
     @Test
     public void loadFail() throws Exception {
+        new Database().clear();
         List<User> users = new ArrayList<>();
         users.add(new User("username1", "password1", "email1", "firstname1", "lastname1", "m", "1"));
         users.add(new User("username1", "password2", "email2", "firstname2", "lastname2", "f", "2"));
@@ -84,4 +88,55 @@ public class LoadServiceTest {
 
         db.closeConnection(true);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void loadStreamPass() throws Exception {
+        StringBuilder json = new StringBuilder("{\"users\":[],\"persons\":[");
+        for (int i = 0; i < LoadService.BATCH_SIZE + 1; ++i) {
+            if (i > 0) json.append(',');
+            json.append(new Gson().toJson(new Person("p" + i, "username1", "first", "last", "m", null, null, null)));
+        }
+        json.append("],\"events\":").append(new Gson().toJson(request.getEvents())).append('}');
+
+        // Check that records spanning more than one batch are all added
+        LoadResult result = new LoadService().load(new StringReader(json.toString()));
+        assertTrue(result.isSuccess());
+        assertEquals("Successfully added 0 users, " + (LoadService.BATCH_SIZE + 1) + " persons, and 2 events to the database.", result.getMessage());
+
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        assertEquals(LoadService.BATCH_SIZE + 1, new PersonDAO(conn).findRelatives("username1").size());
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void loadStreamFail() throws Exception {
+        new Database().clear();
+        String json = "{\"users\":" + new Gson().toJson(request.getUsers()) + ",\"persons\":[{\"personID\":";
+
+        // Check that malformed json is rejected and nothing is added
+        LoadResult result = new LoadService().load(new StringReader(json));
+        assertFalse(result.isSuccess());
+        assertEquals("ERROR: Invalid request data", result.getMessage());
+
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        assertNull(new UserDAO(conn).find("username1"));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void loadStreamFailKeepsData() throws Exception {
+        assertTrue(new LoadService().load(request).isSuccess());
+
+        // Check that a malformed load doesn't clear what was already there
+        LoadResult result = new LoadService().load(new StringReader("{\"users\":[{\"userName\":"));
+        assertFalse(result.isSuccess());
+
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        assertEquals("password1", new UserDAO(conn).find("username1").getPassword());
+        assertEquals("country2", new EventDAO(conn).find("9").getCountry());
+        db.closeConnection(true);
+    }
+}
@@ -18,8 +18,8 @@ public class LoginServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
         UserDAO userDAO = new UserDAO(conn);
         User user = new User("username", "password", "email", "first", "last", "m");
@@ -1,5 +1,6 @@
 package com.teranpeterson.server.service;
 
+import com.teranpeterson.server.cache.ResponseCache;
 import com.teranpeterson.server.dao.AuthTokenDAO;
 import com.teranpeterson.server.dao.Database;
 import com.teranpeterson.server.dao.PersonDAO;
@@ -11,6 +12,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -18,8 +21,8 @@ public class PersonServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
         AuthToken token = new AuthToken("username", "token");
         AuthTokenDAO authTokenDAO = new AuthTokenDAO(conn);
@@ -49,4 +52,143 @@ public class PersonServiceTest {
         assertNull(result.getPerson());
         assertFalse(result.isSuccess());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void relativesPass() {
+        Collector<Person> sink = new Collector<>();
+        PersonResult result = new PersonService().relatives(new PersonRequest("token"), sink);
+
+        // Check that every person was streamed to the sink
+        assertTrue(result.isSuccess());
+        assertTrue(sink.ended);
+        assertEquals(1, sink.records.size());
+        assertEquals("12345", sink.records.get(0).getPersonID());
+    }
+
+    @Test
+    public void relativesFail() {
+        Collector<Person> sink = new Collector<>();
+        PersonResult result = new PersonService().relatives(new PersonRequest("nottoken"), sink);
+
+        // Check that nothing is streamed without a valid auth token
+        assertFalse(result.isSuccess());
+        assertFalse(sink.started);
+        assertTrue(sink.records.isEmpty());
+    }
+
+    @Test
+    public void relativesCachedPass() {
+        Recorder<Person> first = new Recorder<>();
+        Recorder<Person> second = new Recorder<>();
+        new PersonService().relatives(new PersonRequest("token"), first);
+        new PersonService().relatives(new PersonRequest("token"), second);
+
+        // Check that the second request is sent from the cache without reading any records
+        assertEquals(1, first.records.size());
+        assertTrue(second.records.isEmpty());
+        assertArrayEquals(first.recorded(), second.replayed);
+
+        // Check that a change to the user's data sends the list from the database again
+        ResponseCache.getInstance().invalidateUser("username");
+        Recorder<Person> third = new Recorder<>();
+        new PersonService().relatives(new PersonRequest("token"), third);
+        assertEquals(1, third.records.size());
+        assertNull(third.replayed);
+    }
+
+    @Test
+    public void relativesUnchangedPass() {
+        Recorder<Person> first = new Recorder<>();
+        new PersonService().relatives(new PersonRequest("token"), first);
+        Recorder<Person> second = new Recorder<>();
+        second.known = first.etag;
+        PersonResult result = new PersonService().relatives(new PersonRequest("token"), second);
+
+        // Check that nothing is sent to a client that already has the latest list
+        assertNotNull(first.etag);
+        assertTrue(result.isSuccess());
+        assertFalse(second.started);
+        assertNull(second.replayed);
+
+        // Check that the tag changes with the user's data
+        ResponseCache.getInstance().invalidateUser("username");
+        Recorder<Person> third = new Recorder<>();
+        third.known = first.etag;
+        new PersonService().relatives(new PersonRequest("token"), third);
+        assertNotEquals(first.etag, third.etag);
+        assertEquals(1, third.records.size());
+    }
+
+    @Test
+    public void relativesPagedPass() throws Exception {
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        new PersonDAO(conn).insert(new Person("67890", "username", "first", "last", "f", "username"));
+        db.closeConnection(true);
+
+        PersonRequest request = new PersonRequest("token");
+        request.setLimit(1);
+        Collector<Person> first = new Collector<>();
+        PersonResult page = new PersonService().relatives(request, first);
+        request.setAfter(page.getNext());
+        Collector<Person> second = new Collector<>();
+        PersonResult last = new PersonService().relatives(request, second);
+
+        // Check that each page holds one person and the last page has no cursor
+        assertEquals("12345", page.getNext());
+        assertEquals("12345", first.records.get(0).getPersonID());
+        assertEquals(1, second.records.size());
+        assertEquals("67890", second.records.get(0).getPersonID());
+        assertNull(last.getNext());
+    }
+
+    /**
+     * Keeps streamed records in a list
+     */
+    private static class Collector<T> implements ListSink<T> {
+        boolean started;
+        boolean ended;
+        List<T> records = new ArrayList<>();
+
+        @Override
+        public void begin() {
+            started = true;
+        }
+
+        @Override
+        public void write(T record) {
+            records.add(record);
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+
+    /**
+     * Collector that keeps a serialized copy of the list so it can be cached, and already has the list tagged known
+     */
+    private static class Recorder<T> extends Collector<T> {
+        String known;
+        String etag;
+        byte[] replayed;
+
+        @Override
+        public boolean unchanged(String etag) {
+            this.etag = etag;
+            return etag.equals(known);
+        }
+
+        @Override
+        public boolean replay(byte[] json) {
+            replayed = json;
+            return true;
+        }
+
+        @Override
+        public byte[] recorded() {
+            return String.valueOf(records.size()).getBytes();
+        }
+    }
+}
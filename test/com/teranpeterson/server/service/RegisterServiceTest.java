@@ -21,8 +21,8 @@ public class RegisterServiceTest {
     @Before
     public void setUp() throws Exception {
         Database db = new Database();
-        db.clear();
         db.createTables();
+        db.clear();
         Connection conn = db.openConnection();
         UserDAO userDAO = new UserDAO(conn);
         User user = new User("username", "email", "password", "first", "last", "m");
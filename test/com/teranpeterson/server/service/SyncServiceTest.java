@@ -0,0 +1,96 @@
+package com.teranpeterson.server.service;
+
+import com.teranpeterson.server.dao.AuthTokenDAO;
+import com.teranpeterson.server.dao.Database;
+import com.teranpeterson.server.dao.EventDAO;
+import com.teranpeterson.server.dao.PersonDAO;
+import com.teranpeterson.server.model.AuthToken;
+import com.teranpeterson.server.model.Event;
+import com.teranpeterson.server.model.Person;
+import com.teranpeterson.server.request.SyncRequest;
+import com.teranpeterson.server.result.SyncResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+
+import static org.junit.Assert.*;
+
+public class SyncServiceTest {
+    @Before
+    public void setUp() throws Exception {
+        Database db = new Database();
+        db.createTables();
+        db.clear();
+        Connection conn = db.openConnection();
+        new AuthTokenDAO(conn).insert(new AuthToken("username", "token"));
+        new PersonDAO(conn).insert(new Person("12345", "username", "first", "last", "m", "username"));
+        new EventDAO(conn).insert(new Event("12345", "username", "12345", 1, 1, "country", "city", "type", 2019));
+        db.closeConnection(true);
+    }
+
+    @Test
+    public void syncSnapshotPass() {
+        SyncResult result = new SyncService().sync(new SyncRequest("token", null));
+
+        // Check that a client that never synced gets the whole tree
+        assertTrue(result.isSuccess());
+        assertTrue(result.isSnapshot());
+        assertEquals(1, result.getPersons().size());
+        assertEquals(1, result.getEvents().size());
+    }
+
+    @Test
+    public void syncDeltaPass() throws Exception {
+        long version = new SyncService().sync(new SyncRequest("token", null)).getVersion();
+
+        // Nothing changed since the last sync
+        SyncResult result = new SyncService().sync(new SyncRequest("token", version));
+        assertTrue(result.isSuccess());
+        assertFalse(result.isSnapshot());
+        assertEquals(version, result.getVersion());
+        assertTrue(result.getPersons().isEmpty());
+        assertTrue(result.getEvents().isEmpty());
+
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        new EventDAO(conn).insert(new Event("67890", "username", "12345", 1, 1, "country", "city", "type", 2020));
+        db.closeConnection(true);
+
+        // Check that only the new event is sent
+        result = new SyncService().sync(new SyncRequest("token", version));
+        assertFalse(result.isSnapshot());
+        assertTrue(result.getVersion() > version);
+        assertTrue(result.getPersons().isEmpty());
+        assertEquals(1, result.getEvents().size());
+        assertEquals("67890", result.getEvents().get(0).getEventID());
+    }
+
+    @Test
+    public void syncResetPass() throws Exception {
+        long version = new SyncService().sync(new SyncRequest("token", null)).getVersion();
+
+        Database db = new Database();
+        Connection conn = db.openConnection();
+        new PersonDAO(conn).deleteRelatives("username");
+        new EventDAO(conn).deleteEvents("username");
+        db.closeConnection(true);
+
+        // Check that deletes force a snapshot since they can't be sent as changes
+        SyncResult result = new SyncService().sync(new SyncRequest("token", version));
+        assertTrue(result.isSuccess());
+        assertTrue(result.isSnapshot());
+        assertTrue(result.getPersons().isEmpty());
+        assertTrue(result.getEvents().isEmpty());
+    }
+
+    @Test
+    public void syncFail() {
+        SyncResult result = new SyncService().sync(new SyncRequest("nottoken", null));
+
+        // Check that nothing is synced without a valid auth token
+        assertFalse(result.isSuccess());
+        assertNull(result.getPersons());
+        assertNull(result.getEvents());
+    }
+}